@@ -0,0 +1,171 @@
+package ch.srg.mediaplayer.cache;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the manifest cache with manifests served from memory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ManifestCacheTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Uri VOD_URI = Uri.parse("https://example.com/vod/manifest.mpd");
+    private static final Uri REDIRECTED_VOD_URI = Uri.parse("https://cdn.example.com/vod/manifest.mpd");
+    private static final Uri LIVE_URI = Uri.parse("https://example.com/live/playlist.m3u8");
+    private static final String VOD_MANIFEST = "<MPD type=\"static\"></MPD>";
+    private static final String LIVE_PLAYLIST = "#EXTM3U\n#EXT-X-TARGETDURATION:10\n#EXTINF:10,\nsegment1.ts\n";
+
+    /**
+     * Serves the manifests, following the redirects, and counts the downloads.
+     */
+    private static class FakeDataSourceFactory implements DataSource.Factory {
+        final Map<Uri, byte[]> manifests = new HashMap<>();
+        final Map<Uri, Uri> redirects = new HashMap<>();
+        int openCount;
+
+        @Override
+        public DataSource createDataSource() {
+            return new DataSource() {
+                @Nullable
+                private Uri uri;
+                @Nullable
+                private DataSource dataSource;
+
+                @Override
+                public void addTransferListener(TransferListener transferListener) {
+                }
+
+                @Override
+                public long open(DataSpec dataSpec) throws IOException {
+                    openCount++;
+                    uri = redirects.containsKey(dataSpec.uri) ? redirects.get(dataSpec.uri) : dataSpec.uri;
+                    byte[] data = manifests.get(uri);
+                    if (data == null) {
+                        throw new IOException("Not found: " + uri);
+                    }
+                    dataSource = new ByteArrayDataSource(data);
+                    return dataSource.open(dataSpec);
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int readLength) throws IOException {
+                    return dataSource != null ? dataSource.read(buffer, offset, readLength) : C.RESULT_END_OF_INPUT;
+                }
+
+                @Nullable
+                @Override
+                public Uri getUri() {
+                    return uri;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    uri = null;
+                    if (dataSource != null) {
+                        dataSource.close();
+                        dataSource = null;
+                    }
+                }
+            };
+        }
+    }
+
+    private static FakeDataSourceFactory createFactory() {
+        FakeDataSourceFactory factory = new FakeDataSourceFactory();
+        factory.manifests.put(REDIRECTED_VOD_URI, VOD_MANIFEST.getBytes(UTF_8));
+        factory.redirects.put(VOD_URI, REDIRECTED_VOD_URI);
+        factory.manifests.put(LIVE_URI, LIVE_PLAYLIST.getBytes(UTF_8));
+        return factory;
+    }
+
+    @Test
+    public void testFinalUri() throws IOException {
+        ManifestCache cache = new ManifestCache(createFactory());
+        ManifestCache.Manifest manifest = cache.load(VOD_URI);
+        assertEquals(REDIRECTED_VOD_URI, manifest.uri);
+        assertEquals(VOD_MANIFEST, new String(manifest.data, UTF_8));
+
+        ManifestCacheDataSource dataSource = new ManifestCacheDataSource(cache, createFactory().createDataSource());
+        dataSource.open(new DataSpec(VOD_URI));
+        assertEquals(REDIRECTED_VOD_URI, dataSource.getUri());
+        dataSource.close();
+    }
+
+    @Test
+    public void testVodTtl() throws IOException {
+        FakeDataSourceFactory factory = createFactory();
+        ManifestCache cache = new ManifestCache(factory, 60000, 60000, 4);
+        cache.load(VOD_URI);
+        assertNotNull(cache.take(VOD_URI));
+        assertNotNull(cache.take(VOD_URI));
+        cache.load(VOD_URI);
+        assertEquals(1, factory.openCount);
+
+        ManifestCache expiredCache = new ManifestCache(factory, 0, 0, 4);
+        expiredCache.load(VOD_URI);
+        assertNull(expiredCache.take(VOD_URI));
+        expiredCache.load(VOD_URI);
+        assertEquals(3, factory.openCount);
+    }
+
+    @Test
+    public void testLiveTakenOnce() throws IOException {
+        FakeDataSourceFactory factory = createFactory();
+        ManifestCache cache = new ManifestCache(factory, 60000, 60000, 4);
+        cache.load(LIVE_URI);
+        assertNotNull(cache.take(LIVE_URI));
+        assertNull(cache.take(LIVE_URI));
+        cache.load(LIVE_URI);
+        assertEquals(2, factory.openCount);
+    }
+
+    @Test
+    public void testHlsChunksNotCached() throws IOException {
+        FakeDataSourceFactory factory = createFactory();
+        ManifestCache cache = new ManifestCache(factory, 60000, 60000, 4);
+        cache.load(VOD_URI);
+        ManifestCacheDataSource.HlsFactory hlsFactory = new ManifestCacheDataSource.HlsFactory(cache, factory);
+
+        DataSource mediaDataSource = hlsFactory.createDataSource(C.DATA_TYPE_MEDIA);
+        mediaDataSource.open(new DataSpec(VOD_URI));
+        mediaDataSource.close();
+        assertEquals(2, factory.openCount);
+
+        DataSource playlistDataSource = hlsFactory.createDataSource(C.DATA_TYPE_MANIFEST);
+        playlistDataSource.open(new DataSpec(VOD_URI));
+        assertEquals(REDIRECTED_VOD_URI, playlistDataSource.getUri());
+        playlistDataSource.close();
+        assertEquals(2, factory.openCount);
+    }
+
+    @Test
+    public void testIsLive() {
+        assertFalse(ManifestCache.isLive(VOD_MANIFEST.getBytes(UTF_8)));
+        assertTrue(ManifestCache.isLive("<MPD type=\"dynamic\"></MPD>".getBytes(UTF_8)));
+        assertTrue(ManifestCache.isLive(LIVE_PLAYLIST.getBytes(UTF_8)));
+        assertFalse(ManifestCache.isLive((LIVE_PLAYLIST + "#EXT-X-ENDLIST\n").getBytes(UTF_8)));
+        assertFalse(ManifestCache.isLive("#EXTM3U\n#EXT-X-STREAM-INF:BANDWIDTH=1000\nvideo.m3u8\n".getBytes(UTF_8)));
+    }
+}
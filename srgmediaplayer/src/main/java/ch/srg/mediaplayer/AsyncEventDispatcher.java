@@ -0,0 +1,202 @@
+package ch.srg.mediaplayer;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Delivers player events to listeners on a background thread, for listeners doing slow work (analytics, disk I/O).
+ * Events are queued by the player without blocking, and delivered in batches at most once per flush interval. When
+ * the backlog is full, events are dropped according to the {@link DropPolicy}.
+ * <p>
+ * Used with {@link SRGMediaPlayerController#registerEventListener(SRGMediaPlayerController.Listener, java.util.EnumSet, AsyncEventDispatcher)}.
+ * A dispatcher can be shared by several listeners.
+ */
+public class AsyncEventDispatcher {
+    private static final String TAG = "AsyncEventDispatcher";
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+    public static final int DEFAULT_MAX_BACKLOG = 1000;
+
+    public enum DropPolicy {
+        /**
+         * Drop the oldest queued event to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new event.
+         */
+        DROP_NEWEST
+    }
+
+    /**
+     * Optionally implemented by asynchronous listeners to be notified at the end of each batch, for instance to write
+     * the events of a batch at once.
+     */
+    public interface BatchListener extends SRGMediaPlayerController.Listener {
+        @WorkerThread
+        void onMediaPlayerEventBatchEnd();
+    }
+
+    /**
+     * Queued event. Listeners are registered weakly, the backlog does not keep them, nor their controller, alive: the
+     * event is dropped when either has been garbage collected before the flush.
+     */
+    private static final class Delivery {
+        @Nullable
+        final WeakReference<SRGMediaPlayerController> controllerReference;
+        final WeakReference<SRGMediaPlayerController.Listener> listenerReference;
+        final SRGMediaPlayerController.Event event;
+
+        Delivery(@Nullable SRGMediaPlayerController controller, SRGMediaPlayerController.Listener listener, SRGMediaPlayerController.Event event) {
+            this.controllerReference = controller != null ? new WeakReference<>(controller) : null;
+            this.listenerReference = new WeakReference<>(listener);
+            this.event = event;
+        }
+    }
+
+    private final long flushIntervalMs;
+    private final int maxBacklog;
+    private final DropPolicy dropPolicy;
+    private final ScheduledExecutorService executor;
+    private final ConcurrentLinkedQueue<Delivery> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean shutdown;
+
+    public AsyncEventDispatcher(long flushIntervalMs, int maxBacklog, @NonNull DropPolicy dropPolicy) {
+        if (maxBacklog <= 0) {
+            throw new IllegalArgumentException("Invalid backlog size: " + maxBacklog);
+        }
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBacklog = maxBacklog;
+        this.dropPolicy = dropPolicy;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SRGMediaPlayer-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public AsyncEventDispatcher() {
+        this(DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_MAX_BACKLOG, DropPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Queue an event for a listener, called by the player.
+     */
+    void post(@NonNull SRGMediaPlayerController controller, @NonNull SRGMediaPlayerController.Listener listener,
+              @NonNull SRGMediaPlayerController.Event event) {
+        if (shutdown) {
+            droppedEventCount.incrementAndGet();
+            return;
+        }
+        if (backlog.incrementAndGet() > maxBacklog) {
+            if (dropPolicy == DropPolicy.DROP_NEWEST || queue.poll() == null) {
+                backlog.decrementAndGet();
+                droppedEventCount.incrementAndGet();
+                return;
+            }
+            // Oldest event dropped, its slot is used by the new one
+            backlog.decrementAndGet();
+            droppedEventCount.incrementAndGet();
+        }
+        queue.offer(new Delivery(controller, listener, event));
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::flush, flushIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down in the meantime
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return number of events dropped because the backlog was full, the dispatcher shut down or the listener was
+     * garbage collected
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    /**
+     * Deliver the queued events and stop the background thread. Events posted afterwards are dropped.
+     */
+    public synchronized void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        executor.execute(this::flush);
+        executor.shutdown();
+    }
+
+    /**
+     * @return true once {@link #shutdown()} has been called
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @WorkerThread
+    private void flush() {
+        flushScheduled.set(false);
+        List<Delivery> batch = new ArrayList<>(Math.min(backlog.get(), maxBacklog));
+        Delivery delivery;
+        while ((delivery = queue.poll()) != null) {
+            backlog.decrementAndGet();
+            batch.add(delivery);
+        }
+        List<BatchListener> batchListeners = null;
+        for (Delivery item : batch) {
+            SRGMediaPlayerController.Listener listener = item.listenerReference.get();
+            SRGMediaPlayerController controller = item.controllerReference != null ? item.controllerReference.get() : null;
+            if (listener == null || (item.controllerReference != null && controller == null)) {
+                droppedEventCount.incrementAndGet();
+                continue;
+            }
+            try {
+                listener.onMediaPlayerEvent(controller, item.event);
+            } catch (RuntimeException e) {
+                // Keep delivering the batch, an exception would otherwise be swallowed by the executor
+                Log.e(TAG, "Listener failed on " + (item.event != null ? item.event.type : null), e);
+            }
+            if (listener instanceof BatchListener) {
+                if (batchListeners == null) {
+                    batchListeners = new ArrayList<>();
+                }
+                if (!batchListeners.contains(listener)) {
+                    batchListeners.add((BatchListener) listener);
+                }
+            }
+        }
+        if (batchListeners != null) {
+            for (BatchListener batchListener : batchListeners) {
+                try {
+                    batchListener.onMediaPlayerEventBatchEnd();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Listener failed on batch end", e);
+                }
+            }
+        }
+    }
+}
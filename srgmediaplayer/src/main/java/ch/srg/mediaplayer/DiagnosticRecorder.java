@@ -0,0 +1,116 @@
+package ch.srg.mediaplayer;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Fixed size ring buffer of the last player diagnostic records. Records are stored in primitive arrays, recording
+ * does not allocate. Records are formatted only by {@link #dump()}, for instance to attach them to a crash report.
+ */
+public class DiagnosticRecorder {
+    /**
+     * An event has been dispatched. code: event type ordinal, value1: media position, value2: listener count.
+     */
+    public static final int KIND_EVENT = 1;
+    /**
+     * ExoPlayer state change. code: playback state, value1: play when ready (0 or 1), value2: media position.
+     */
+    public static final int KIND_PLAYER_STATE = 2;
+    /**
+     * Position discontinuity. code: discontinuity reason, value1: media position.
+     */
+    public static final int KIND_POSITION_DISCONTINUITY = 3;
+
+    private final long[] timestamps;
+    private final int[] kinds;
+    private final int[] codes;
+    private final long[] values1;
+    private final long[] values2;
+    /**
+     * Number of records since creation, the next record is written at count % capacity.
+     */
+    private long count;
+
+    public DiagnosticRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        timestamps = new long[capacity];
+        kinds = new int[capacity];
+        codes = new int[capacity];
+        values1 = new long[capacity];
+        values2 = new long[capacity];
+    }
+
+    public synchronized void record(int kind, int code, long value1, long value2) {
+        int index = (int) (count % timestamps.length);
+        timestamps[index] = SystemClock.elapsedRealtime();
+        kinds[index] = kind;
+        codes[index] = code;
+        values1[index] = value1;
+        values2[index] = value2;
+        count++;
+    }
+
+    public int getCapacity() {
+        return timestamps.length;
+    }
+
+    /**
+     * @return number of records available, at most {@link #getCapacity()}
+     */
+    public synchronized int size() {
+        return (int) Math.min(count, timestamps.length);
+    }
+
+    public synchronized void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return available records, oldest first, one per line
+     */
+    @NonNull
+    public synchronized String dump() {
+        StringBuilder sb = new StringBuilder();
+        int size = size();
+        for (long i = count - size; i < count; i++) {
+            int index = (int) (i % timestamps.length);
+            sb.append(timestamps[index]).append(' ');
+            appendRecord(sb, kinds[index], codes[index], values1[index], values2[index]);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendRecord(@NonNull StringBuilder sb, int kind, int code, long value1, long value2) {
+        switch (kind) {
+            case KIND_EVENT:
+                SRGMediaPlayerController.Event.Type[] types = SRGMediaPlayerController.Event.Type.values();
+                sb.append("event ").append(code >= 0 && code < types.length ? types[code].name() : String.valueOf(code))
+                        .append(" position=").append(value1)
+                        .append(" listeners=").append(value2);
+                break;
+            case KIND_PLAYER_STATE:
+                sb.append("player state=").append(code)
+                        .append(" playWhenReady=").append(value1 != 0)
+                        .append(" position=").append(value2);
+                break;
+            case KIND_POSITION_DISCONTINUITY:
+                sb.append("position discontinuity reason=").append(code)
+                        .append(" position=").append(value1);
+                break;
+            default:
+                sb.append("kind=").append(kind)
+                        .append(" code=").append(code)
+                        .append(" value1=").append(value1)
+                        .append(" value2=").append(value2);
+                break;
+        }
+    }
+}
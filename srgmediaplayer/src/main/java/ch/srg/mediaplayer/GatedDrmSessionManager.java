@@ -0,0 +1,202 @@
+package ch.srg.mediaplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.drm.DrmSession;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.drm.ExoMediaCrypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Lets the player load the manifest, init segments and first chunks of a protected media while the license is being
+ * restored or downloaded. Sessions are acquired by the renderers on the playback thread when the first encrypted format
+ * is read. While the gate is closed, they get a pending session without media crypto, the renderers wait for it
+ * without blocking the playback thread. When the gate is opened, the offline license mode is set and the actual
+ * sessions are acquired, both on the playback thread, so that no session exists when the mode is set.
+ */
+final class GatedDrmSessionManager<T extends ExoMediaCrypto> implements DrmSessionManager<T> {
+    private static final String TAG = SRGMediaPlayerController.TAG;
+
+    /**
+     * Session handed out while the gate is closed, delegating to the actual session once acquired.
+     */
+    private static final class PendingDrmSession<T extends ExoMediaCrypto> implements DrmSession<T> {
+        final Looper playbackLooper;
+        final DrmInitData drmInitData;
+        @Nullable
+        volatile DrmSession<T> session;
+
+        PendingDrmSession(Looper playbackLooper, DrmInitData drmInitData) {
+            this.playbackLooper = playbackLooper;
+            this.drmInitData = drmInitData;
+        }
+
+        @Override
+        public int getState() {
+            DrmSession<T> session = this.session;
+            return session != null ? session.getState() : STATE_OPENING;
+        }
+
+        @Nullable
+        @Override
+        public DrmSessionException getError() {
+            DrmSession<T> session = this.session;
+            return session != null ? session.getError() : null;
+        }
+
+        @Nullable
+        @Override
+        public T getMediaCrypto() {
+            DrmSession<T> session = this.session;
+            return session != null ? session.getMediaCrypto() : null;
+        }
+
+        @Nullable
+        @Override
+        public Map<String, String> queryKeyStatus() {
+            DrmSession<T> session = this.session;
+            return session != null ? session.queryKeyStatus() : null;
+        }
+
+        @Nullable
+        @Override
+        public byte[] getOfflineLicenseKeySetId() {
+            DrmSession<T> session = this.session;
+            return session != null ? session.getOfflineLicenseKeySetId() : null;
+        }
+    }
+
+    private final DefaultDrmSessionManager<T> delegate;
+    @Nullable
+    private Handler playbackHandler;
+    /**
+     * Incremented on the main thread by each close and forced open, a license step only opens the gate it closed.
+     */
+    private volatile int gateRequest;
+    private volatile boolean closed;
+
+    // Playback thread only
+    private final List<PendingDrmSession<T>> pendingSessions = new ArrayList<>();
+    private int acquiredSessionCount;
+
+    /**
+     * @param delegate session manager, its mode is set when the gate is opened
+     */
+    GatedDrmSessionManager(@NonNull DefaultDrmSessionManager<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param playbackLooper looper of the player the manager is given to
+     */
+    void setPlaybackLooper(@NonNull Looper playbackLooper) {
+        playbackHandler = new Handler(playbackLooper);
+    }
+
+    /**
+     * Make session acquisitions pending, until {@link #open(int, byte[])} with the returned request. Called on the main
+     * thread.
+     *
+     * @return gate request
+     */
+    int close() {
+        closed = true;
+        return ++gateRequest;
+    }
+
+    /**
+     * Open the gate closed by a request, if it has not been closed or opened again since. Called from any thread.
+     *
+     * @param request                request returned by {@link #close()}
+     * @param offlineLicenseKeySetId offline license used by the next sessions, null to request a streaming license
+     */
+    void open(int request, @Nullable byte[] offlineLicenseKeySetId) {
+        runOnPlaybackThread(() -> {
+            if (request == gateRequest) {
+                openGate(offlineLicenseKeySetId);
+            }
+        });
+    }
+
+    /**
+     * Open the gate without changing the license mode, cancelling the current request. Called on the main thread.
+     */
+    void open() {
+        int request = ++gateRequest;
+        runOnPlaybackThread(() -> {
+            if (request == gateRequest) {
+                openGate(null);
+            }
+        });
+    }
+
+    private void runOnPlaybackThread(@NonNull Runnable runnable) {
+        Handler handler = playbackHandler;
+        // Not posted once the player is released
+        if (handler != null) {
+            handler.post(runnable);
+        }
+    }
+
+    private void openGate(@Nullable byte[] offlineLicenseKeySetId) {
+        if (offlineLicenseKeySetId != null) {
+            if (acquiredSessionCount == 0) {
+                delegate.setMode(DefaultDrmSessionManager.MODE_PLAYBACK, offlineLicenseKeySetId);
+            } else {
+                Log.w(TAG, "Sessions still acquired, offline license not used");
+            }
+        }
+        closed = false;
+        for (PendingDrmSession<T> pendingSession : pendingSessions) {
+            pendingSession.session = delegate.acquireSession(pendingSession.playbackLooper, pendingSession.drmInitData);
+            acquiredSessionCount++;
+        }
+        pendingSessions.clear();
+    }
+
+    @Override
+    public boolean canAcquireSession(@NonNull DrmInitData drmInitData) {
+        return delegate.canAcquireSession(drmInitData);
+    }
+
+    @Override
+    public DrmSession<T> acquireSession(Looper playbackLooper, DrmInitData drmInitData) {
+        if (closed) {
+            PendingDrmSession<T> pendingSession = new PendingDrmSession<>(playbackLooper, drmInitData);
+            pendingSessions.add(pendingSession);
+            return pendingSession;
+        }
+        acquiredSessionCount++;
+        return delegate.acquireSession(playbackLooper, drmInitData);
+    }
+
+    @Override
+    public void releaseSession(DrmSession<T> drmSession) {
+        if (drmSession instanceof PendingDrmSession) {
+            PendingDrmSession<T> pendingSession = (PendingDrmSession<T>) drmSession;
+            if (pendingSessions.remove(pendingSession)) {
+                return;
+            }
+            drmSession = pendingSession.session;
+            if (drmSession == null) {
+                return;
+            }
+        }
+        acquiredSessionCount--;
+        delegate.releaseSession(drmSession);
+    }
+}
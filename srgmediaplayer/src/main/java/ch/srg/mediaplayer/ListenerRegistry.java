@@ -0,0 +1,148 @@
+package ch.srg.mediaplayer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Copy-on-write set of weakly referenced listeners. Registrations replace the snapshot array, dispatching iterates the
+ * current snapshot without allocation and is not affected by registrations made by the listeners themselves.
+ * <p>
+ * Each listener is registered with a mask of the event types it receives, see {@link #typeBit(Enum)}, and optionally
+ * with an {@link AsyncEventDispatcher}, strongly referenced by the entry.
+ */
+final class ListenerRegistry<T> {
+    static final long ALL_TYPES = -1L;
+
+    @SuppressWarnings("rawtypes")
+    private static final Entry[] EMPTY = new Entry[0];
+
+    @SuppressWarnings("unchecked")
+    private volatile Entry<T>[] snapshot = EMPTY;
+    /**
+     * Union of the masks of all entries.
+     */
+    private volatile long typeMask;
+
+    static final class Entry<T> extends WeakReference<T> {
+        final long typeMask;
+        @Nullable
+        final AsyncEventDispatcher dispatcher;
+
+        Entry(@NonNull T listener, long typeMask, @Nullable AsyncEventDispatcher dispatcher) {
+            super(listener);
+            this.typeMask = typeMask;
+            this.dispatcher = dispatcher;
+        }
+
+        boolean accepts(long typeBit) {
+            return (typeMask & typeBit) != 0;
+        }
+    }
+
+    /**
+     * @return the mask bit of an event type, types must have less than 64 values
+     */
+    static long typeBit(@NonNull Enum<?> type) {
+        return 1L << type.ordinal();
+    }
+
+    /**
+     * Register a listener, or change the types and dispatcher of an already registered listener.
+     *
+     * @return false if the listener was already registered
+     */
+    synchronized boolean add(@NonNull T listener, long typeMask, @Nullable AsyncEventDispatcher dispatcher) {
+        boolean registered = indexOf(snapshot, listener) >= 0;
+        Entry<T>[] entries = copyAlive(snapshot, listener, 1);
+        entries[entries.length - 1] = new Entry<>(listener, typeMask, dispatcher);
+        publish(entries);
+        return !registered;
+    }
+
+    /**
+     * @return false if the listener was not registered
+     */
+    synchronized boolean remove(@Nullable T listener) {
+        if (listener == null || indexOf(snapshot, listener) < 0) {
+            return false;
+        }
+        publish(copyAlive(snapshot, listener, 0));
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized void clear() {
+        publish(EMPTY);
+    }
+
+    /**
+     * @return current listeners, must not be modified. References may have been cleared.
+     */
+    @NonNull
+    Entry<T>[] getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return false if no listener receives events of this type
+     */
+    boolean accepts(long typeBit) {
+        return (typeMask & typeBit) != 0;
+    }
+
+    /**
+     * @return true if listener is in entries and receives events of this type
+     */
+    static <T> boolean accepts(@NonNull Entry<T>[] entries, @NonNull T listener, long typeBit) {
+        int index = indexOf(entries, listener);
+        return index >= 0 && entries[index].accepts(typeBit);
+    }
+
+    private void publish(@NonNull Entry<T>[] entries) {
+        long mask = 0;
+        for (Entry<T> entry : entries) {
+            mask |= entry.typeMask;
+        }
+        snapshot = entries;
+        typeMask = mask;
+    }
+
+    private static <T> int indexOf(@NonNull Entry<T>[] entries, @NonNull T listener) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].get() == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copy the entries still referenced, except the one of excluded, leaving extra null slots at the end.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    private static <T> Entry<T>[] copyAlive(@NonNull Entry<T>[] entries, @Nullable T excluded, int extra) {
+        int count = 0;
+        for (Entry<T> entry : entries) {
+            T listener = entry.get();
+            if (listener != null && listener != excluded) {
+                count++;
+            }
+        }
+        Entry<T>[] result = new Entry[count + extra];
+        int index = 0;
+        for (Entry<T> entry : entries) {
+            T listener = entry.get();
+            if (listener != null && listener != excluded && index < count) {
+                result[index++] = entry;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+package ch.srg.mediaplayer;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Immutable snapshot of the playback position at a given time, published by the player on each state change, seek
+ * and periodic update. The current position can be computed from any thread without querying the player.
+ */
+public final class PlaybackClock {
+    static final PlaybackClock STOPPED = new PlaybackClock(0, 0, 1f, false);
+
+    private final long anchorPosition;
+    private final long anchorElapsedRealtime;
+    private final float speed;
+    private final boolean playing;
+    private final long duration;
+
+    /**
+     * @param anchorPosition        player position in milliseconds
+     * @param anchorElapsedRealtime {@link SystemClock#elapsedRealtime()} when the position was read
+     * @param speed                 playback speed
+     * @param playing               true if the position advances
+     * @param duration              media duration in milliseconds, the extrapolated position does not go past it,
+     *                              {@link C#TIME_UNSET} if unknown or live
+     */
+    public PlaybackClock(long anchorPosition, long anchorElapsedRealtime, float speed, boolean playing, long duration) {
+        this.anchorPosition = anchorPosition;
+        this.anchorElapsedRealtime = anchorElapsedRealtime;
+        this.speed = speed;
+        this.playing = playing;
+        this.duration = duration;
+    }
+
+    public PlaybackClock(long anchorPosition, long anchorElapsedRealtime, float speed, boolean playing) {
+        this(anchorPosition, anchorElapsedRealtime, speed, playing, C.TIME_UNSET);
+    }
+
+    /**
+     * @return the extrapolated player position now
+     */
+    public long getPosition() {
+        return getPosition(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @param elapsedRealtime time in the {@link SystemClock#elapsedRealtime()} time base
+     * @return the extrapolated player position at this time
+     */
+    public long getPosition(long elapsedRealtime) {
+        if (!playing || elapsedRealtime <= anchorElapsedRealtime) {
+            return anchorPosition;
+        }
+        long position = anchorPosition + (long) ((elapsedRealtime - anchorElapsedRealtime) * speed);
+        // A stalled or ended player is only known at the next snapshot
+        return duration != C.TIME_UNSET ? Math.min(position, Math.max(duration, anchorPosition)) : position;
+    }
+
+    public long getAnchorPosition() {
+        return anchorPosition;
+    }
+
+    public long getAnchorElapsedRealtime() {
+        return anchorElapsedRealtime;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * @return media duration when the snapshot was taken, {@link C#TIME_UNSET} if unknown or live
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackClock{" +
+                "anchorPosition=" + anchorPosition +
+                ", anchorElapsedRealtime=" + anchorElapsedRealtime +
+                ", speed=" + speed +
+                ", playing=" + playing +
+                ", duration=" + duration +
+                '}';
+    }
+}
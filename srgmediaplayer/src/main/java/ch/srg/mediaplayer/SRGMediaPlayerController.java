@@ -40,6 +40,7 @@ import com.google.android.exoplayer2.ExoPlayerFactory;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.PlayerMessage;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.audio.AudioCapabilities;
@@ -56,6 +57,7 @@ import com.google.android.exoplayer2.drm.MediaDrmCallback;
 import com.google.android.exoplayer2.drm.OfflineLicenseHelper;
 import com.google.android.exoplayer2.drm.UnsupportedDrmException;
 import com.google.android.exoplayer2.ext.mediasession.MediaSessionConnector;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.ProgressiveMediaSource;
 import com.google.android.exoplayer2.source.TrackGroup;
@@ -63,7 +65,9 @@ import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
 import com.google.android.exoplayer2.source.dash.DashUtil;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
 import com.google.android.exoplayer2.source.hls.DefaultHlsDataSourceFactory;
+import com.google.android.exoplayer2.source.hls.HlsDataSourceFactory;
 import com.google.android.exoplayer2.source.hls.HlsManifest;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.text.Cue;
@@ -84,23 +88,31 @@ import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.video.VideoListener;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.WeakHashMap;
 
+import ch.srg.mediaplayer.cache.ManifestCache;
+import ch.srg.mediaplayer.cache.ManifestCacheDataSource;
+import ch.srg.mediaplayer.segment.model.CompactSegmentList;
 import ch.srg.mediaplayer.segment.model.Mark;
 import ch.srg.mediaplayer.segment.model.MediaPlayerTimeLine;
 import ch.srg.mediaplayer.segment.model.Segment;
 import ch.srg.mediaplayer.segment.model.SegmentList;
+import ch.srg.mediaplayer.segment.model.SegmentLookup;
+import ch.srg.mediaplayer.segment.model.SegmentTracker;
+import ch.srg.mediaplayer.trace.TraceRecorder;
 import ch.srg.mediaplayer.utils.FileLicenseStore;
 import ch.srg.mediaplayer.utils.LicenseStoreDelegate;
 import ch.srg.mediaplayer.utils.MonitorTransferListener;
@@ -117,6 +129,11 @@ import ch.srg.mediaplayer.utils.MonitorTransferListener;
  * <p>
  * Threading: all calls to public method must be made from main thread. An exception will be
  * thrown in debug mode.
+ * <p>
+ * Event order: events are delivered in the order they are produced, except
+ * {@link Event.Type#LOADING_STATE_CHANGED}. Those produced while handling one player callback are merged into one
+ * event, built with the resulting state and delivered when the callback returns, or just before the next other event
+ * if it comes first. See {@link #setEventCoalescingEnabled(boolean)}.
  */
 @SuppressWarnings({"unused", "unchecked", "UnusedReturnValue", "WeakerAccess", "PointlessBitwiseExpression"})
 @MainThread
@@ -130,8 +147,20 @@ public class SRGMediaPlayerController implements Handler.Callback,
     public static final String VERSION = BuildConfig.VERSION_NAME;
 
     private static final long[] EMPTY_TIME_RANGE = new long[2];
+    /**
+     * Periodic update period while playing and the position is tracked (segments, playback start).
+     */
     private static final long UPDATE_PERIOD = 100;
-    private static final long SEGMENT_HYSTERESIS_MS = 5000;
+    /**
+     * Periodic update period while playing and the position is not tracked.
+     */
+    private static final long IDLE_UPDATE_PERIOD = 1000;
+    private static final int DIAGNOSTIC_RECORD_COUNT = 256;
+    /**
+     * Event types only describing the current state, several of them in a row can be merged. Only the loading state,
+     * produced several times by one player transition, other events keep their timing.
+     */
+    private static final long COALESCED_EVENT_TYPES = ListenerRegistry.typeBit(Event.Type.LOADING_STATE_CHANGED);
     private static final int MINIMUM_DRM_LICENSE_DURATION_SECONDS = 2 * 60;
     // Bandwidth meter uses application context which is fine
     @SuppressLint("StaticFieldLeak")
@@ -149,6 +178,8 @@ public class SRGMediaPlayerController implements Handler.Callback,
     @Nullable
     private DefaultDrmSessionManager<FrameworkMediaCrypto> drmSessionManager;
     @Nullable
+    private GatedDrmSessionManager<FrameworkMediaCrypto> gatedDrmSessionManager;
+    @Nullable
     OfflineLicenseHelper<FrameworkMediaCrypto> offlineLicenseHelper;
     private DefaultHttpDataSourceFactory httpDataSourceFactory;
 
@@ -173,6 +204,7 @@ public class SRGMediaPlayerController implements Handler.Callback,
     private boolean mutedBecauseFocusLoss;
     private Throwable fatalError;
     private long controllerId;
+    private String controllerIdString;
     private static long controllerIdCounter;
 
     private boolean firstFrameRendered;
@@ -367,6 +399,18 @@ public class SRGMediaPlayerController implements Handler.Callback,
              * The Segment list has changed.
              */
             SEGMENT_LIST_CHANGE,
+            /**
+             * Segments have been appended to the segment list. Added segments (player time) in {@link #segments}.
+             */
+            SEGMENTS_ADDED,
+            /**
+             * Segments of the segment list have been replaced. New segments (player time) in {@link #segments}.
+             */
+            SEGMENTS_UPDATED,
+            /**
+             * Segments have been removed from the segment list. Removed segments (player time) in {@link #segments}.
+             */
+            SEGMENTS_REMOVED,
             /**
              * DRM Keys have been received. Can be called multiple times during stream playback.
              */
@@ -379,7 +423,12 @@ public class SRGMediaPlayerController implements Handler.Callback,
              * Playback actually started: media stream position is changing after playback. This event is also sent
              * for audio only media. It Can be used to monitor "perceived" performance.
              */
-            PLAYBACK_ACTUALLY_STARTED
+            PLAYBACK_ACTUALLY_STARTED,
+            /**
+             * Playback moved to the media queued with {@link #enqueueNext(Uri, int, List)}. The segment list and
+             * time line are those of the new media.
+             */
+            QUEUE_ITEM_CHANGE
         }
 
         public final Type type;
@@ -402,6 +451,11 @@ public class SRGMediaPlayerController implements Handler.Callback,
         @Nullable
         public String blockingReason;
         public Event.Type segmentEventType;
+        /**
+         * Changed segments for {@link Type#SEGMENTS_ADDED}, {@link Type#SEGMENTS_UPDATED} and {@link Type#SEGMENTS_REMOVED}.
+         */
+        @Nullable
+        public List<Segment> segments;
 
         @Nullable
         public final SRGMediaPlayerException exception;
@@ -445,6 +499,11 @@ public class SRGMediaPlayerController implements Handler.Callback,
             this(controller, eventType, eventException, segment, null);
         }
 
+        private Event(SRGMediaPlayerController controller, Type eventType, @NonNull List<Segment> segments) {
+            this(controller, eventType, null, null, null);
+            this.segments = segments;
+        }
+
         private Event(SRGMediaPlayerController controller, Type eventType, SRGMediaPlayerException eventException) {
             this(controller, eventType, eventException, null, null);
         }
@@ -477,6 +536,7 @@ public class SRGMediaPlayerController implements Handler.Callback,
                     ", segment=" + segment +
                     ", blockingReason='" + blockingReason + '\'' +
                     ", segmentEventType=" + segmentEventType +
+                    ", segments=" + segments +
                     '}';
         }
     }
@@ -505,6 +565,10 @@ public class SRGMediaPlayerController implements Handler.Callback,
 
 
     private LicenseStoreDelegate licenseStoreDelegate;
+    /**
+     * Store created with the player, restored when a pooled player is reset.
+     */
+    private final LicenseStoreDelegate defaultLicenseStoreDelegate;
 
     private Context context;
 
@@ -525,6 +589,10 @@ public class SRGMediaPlayerController implements Handler.Callback,
     private final SimpleExoPlayer exoPlayer;
     private final AudioCapabilitiesReceiver audioCapabilitiesReceiver;
     private final DefaultTrackSelector trackSelector;
+    /**
+     * Parameters of the track selector when the player was created, restored when a pooled player is reset.
+     */
+    private final DefaultTrackSelector.Parameters initialTrackSelectorParameters;
 
     @Nullable
     private MediaSessionConnector mediaSessionConnector;
@@ -535,9 +603,37 @@ public class SRGMediaPlayerController implements Handler.Callback,
     private View renderingView;
     private Integer playbackState;
     private SegmentList userSegmentList = new SegmentList();
-    private Segment segmentBeingSkipped;
+    /**
+     * userSegmentList converted to player time, null when it has to be rebuilt.
+     */
     @Nullable
-    private Segment currentSegment = null;
+    private SegmentList playerSegmentList;
+    /**
+     * Used instead of userSegmentList when set with {@link #setSegmentList(CompactSegmentList)}.
+     */
+    @Nullable
+    private CompactSegmentList userCompactSegmentList;
+    /**
+     * userCompactSegmentList converted to player time, null when it has to be rebuilt.
+     */
+    @Nullable
+    private CompactSegmentList playerCompactSegmentList;
+    /**
+     * When true, segment changes are detected at the exact segment boundaries instead of the periodic update.
+     */
+    private boolean segmentBoundarySchedulingEnabled;
+    /**
+     * When true, date segments ending before the start of the player time line are removed.
+     */
+    private boolean segmentEvictionEnabled;
+    @Nullable
+    private PlayerMessage segmentBoundaryMessage;
+    /**
+     * Skips the next blocked segment as soon as playback reaches its mark in.
+     */
+    @Nullable
+    private PlayerMessage blockedSegmentMessage;
+    private final SegmentTracker segmentTracker = new SegmentTracker(SegmentTracker.DEFAULT_HYSTERESIS_MS);
     @Nullable
     private SRGMediaPlayerView mediaPlayerView;
 
@@ -553,9 +649,32 @@ public class SRGMediaPlayerController implements Handler.Callback,
     /**
      * Listeners registered to this player
      */
-    private Set<Listener> eventListeners = Collections.newSetFromMap(new WeakHashMap<>());
+    private final ListenerRegistry<Listener> eventListeners = new ListenerRegistry<>();
+
+    /**
+     * Last events and player state changes, recorded instead of logged.
+     */
+    private final DiagnosticRecorder diagnosticRecorder = new DiagnosticRecorder(DIAGNOSTIC_RECORD_COUNT);
+    @Nullable
+    private TraceRecorder traceRecorder;
+    @Nullable
+    private ManifestCache manifestCache;
+    /**
+     * Keeps the manifest loaded for the offline license until the media source loads it, when no manifest cache is
+     * set.
+     */
+    @Nullable
+    private ManifestCache licenseManifestCache;
+
+    private boolean eventCoalescingEnabled = true;
+    /**
+     * Coalesced events waiting for {@link #MSG_FIRE_EVENT}, in the order they were first produced.
+     */
+    private final Event.Type[] pendingEvents = new Event.Type[Long.bitCount(COALESCED_EVENT_TYPES)];
+    private int pendingEventCount;
+    private long pendingEventTypes;
 
-    private static Set<Listener> globalEventListeners = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final ListenerRegistry<Listener> globalEventListeners = new ListenerRegistry<>();
 
     /**
      * Akamai analytics class.
@@ -576,6 +695,22 @@ public class SRGMediaPlayerController implements Handler.Callback,
     private final Timeline.Window window;
     @NonNull
     private final MediaPlayerTimeLine playerTimeLine;
+    /**
+     * Sources of the current and queued media, null before prepare.
+     */
+    @Nullable
+    private ConcatenatingMediaSource playlistSource;
+    /**
+     * Items of playlistSource, in the same order. Also used as media source tags to identify the current item.
+     */
+    private final List<QueueItem> queueItems = new ArrayList<>();
+    @Nullable
+    private QueueItem currentQueueItem;
+    /**
+     * Pool this player returns to when released, null if not pooled.
+     */
+    @Nullable
+    private SRGMediaPlayerControllerPool pool;
 
     public static String getName() {
         return NAME;
@@ -632,6 +767,7 @@ public class SRGMediaPlayerController implements Handler.Callback,
         audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
 
         controllerId = ++controllerIdCounter;
+        controllerIdString = String.valueOf(controllerId);
 
         audioCapabilitiesReceiver = new AudioCapabilitiesReceiver(this.context, this);
         audioCapabilitiesReceiver.register();
@@ -660,8 +796,10 @@ public class SRGMediaPlayerController implements Handler.Callback,
                         FrameworkMediaDrm.newInstance(drmType),
                         monitoringDrmCallback, null, true);
                 drmSessionManager.addListener(mainHandler, this);
+                gatedDrmSessionManager = new GatedDrmSessionManager<>(drmSessionManager);
                 offlineLicenseHelper = OfflineLicenseHelper.newWidevineInstance(this.drmConfig.getLicenceUrl(),
                         httpDataSourceFactory);
+                licenseManifestCache = new ManifestCache(httpDataSourceFactory, ManifestCache.DEFAULT_VOD_TTL_MS, ManifestCache.DEFAULT_LIVE_TTL_MS, 1);
             } catch (UnsupportedDrmException e) {
                 fatalError = new SRGMediaPlayerException(null, e, SRGMediaPlayerException.Reason.DRM);
             }
@@ -669,7 +807,10 @@ public class SRGMediaPlayerController implements Handler.Callback,
 
         DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(this.context);
         renderersFactory.setExtensionRendererMode(DefaultRenderersFactory.EXTENSION_RENDERER_MODE_PREFER);
-        exoPlayer = ExoPlayerFactory.newSimpleInstance(context, renderersFactory, trackSelector, new DefaultLoadControl(), drmSessionManager, mainHandler.getLooper());
+        exoPlayer = ExoPlayerFactory.newSimpleInstance(context, renderersFactory, trackSelector, new DefaultLoadControl(), gatedDrmSessionManager, mainHandler.getLooper());
+        if (gatedDrmSessionManager != null) {
+            gatedDrmSessionManager.setPlaybackLooper(exoPlayer.getPlaybackLooper());
+        }
         exoPlayer.addListener(this);
         exoPlayer.addVideoListener(this);
         exoPlayer.addTextOutput(this);
@@ -694,16 +835,9 @@ public class SRGMediaPlayerController implements Handler.Callback,
             }
         }
 
-        licenseStoreDelegate = new FileLicenseStore(context);
-    }
-
-    private void applyOfflineLicense(byte[] offlineLicenseKeySetId) {
-        if (drmSessionManager != null && offlineLicenseKeySetId != null) {
-            drmSessionManager.setMode(DefaultDrmSessionManager.MODE_PLAYBACK, offlineLicenseKeySetId);
-            if (debugMode) {
-                debugPrintLicenseDurationRemaining(offlineLicenseKeySetId);
-            }
-        }
+        defaultLicenseStoreDelegate = new FileLicenseStore(context);
+        licenseStoreDelegate = defaultLicenseStoreDelegate;
+        initialTrackSelectorParameters = trackSelector.getParameters();
     }
 
     private boolean isOfflineLicenseExpired(@NonNull byte[] offlineLicenseKeySetId) {
@@ -792,20 +926,27 @@ public class SRGMediaPlayerController implements Handler.Callback,
         }
 
         this.userSegmentList.clear();
+        this.userCompactSegmentList = null;
         playerTimeLine.update(C.TIME_UNSET, C.TIME_UNSET, false, 0L);
         if (segments != null) {
             this.userSegmentList.addAll(segments);
         }
+        invalidatePlayerSegmentList();
         if (segment != null && this.userSegmentList.findSegmentById(segment.getIdentifier()) == null) {
             throw new IllegalArgumentException("Unknown segment: " + segment);
         }
         setState(State.PREPARING);
 
         Long playbackStartPosition = startPositionMs;
-        this.currentSegment = null;
+        segmentTracker.clearCurrentSegment();
+        if (traceRecorder != null) {
+            traceRecorder.recordPrepare();
+            traceRecorder.recordTimeline(playerTimeLine);
+            traceRecorder.recordSegmentList(userSegmentList);
+        }
         currentStreamType = streamType;
-        if (segment != null && segment.getMarkIn().getDate() == null) {
-            broadcastEvent(new Event(this, Event.Type.SEGMENT_SELECTED, null, segment));
+        if (segment != null && !segment.getMarkIn().hasDate()) {
+            broadcastSegmentEvent(Event.Type.SEGMENT_SELECTED, segment);
             playbackStartPosition = (startPositionMs != null ? startPositionMs : 0) + segment.getMarkIn().getPosition();
         }
 
@@ -813,23 +954,47 @@ public class SRGMediaPlayerController implements Handler.Callback,
         Long finalPlaybackStartPosition = playbackStartPosition;
         Runnable prepareViewAndPlayer = () -> prepareViewAndPlayer(uri, streamType, finalPlaybackStartPosition);
         if (drmConfig != null && licenseStoreDelegate != null) {
-            downloadOrApplyOfflineLicense(uri, prepareViewAndPlayer, drmConfig);
-        } else {
-            prepareViewAndPlayer.run();
+            downloadOrApplyOfflineLicense(uri, drmConfig);
         }
+        // Media loading starts while the license is restored or downloaded, only decryption waits for it
+        prepareViewAndPlayer.run();
         broadcastEvent(Event.Type.SEGMENT_LIST_CHANGE);
     }
 
-    private void downloadOrApplyOfflineLicense(@NonNull Uri uri, @NonNull Runnable prepareViewAndPlayer, @NonNull DrmConfig drmConfig) {
+    /**
+     * Restore or download the offline license in background. DRM sessions stay pending until the license mode is set,
+     * without blocking the playback thread, the player can be prepared immediately.
+     */
+    private void downloadOrApplyOfflineLicense(@NonNull Uri uri, @NonNull DrmConfig drmConfig) {
+        GatedDrmSessionManager<FrameworkMediaCrypto> gatedDrmSessionManager = this.gatedDrmSessionManager;
+        if (gatedDrmSessionManager == null) {
+            return;
+        }
+        int gateRequest = gatedDrmSessionManager.close();
+        ManifestCache cache = getPlayerManifestCache();
+        if (cache != null) {
+            // Single download shared by the license step and the media source
+            cache.prefetch(uri);
+        }
         AsyncTask.execute(() -> {
+            byte[] offlineLicenseKeySetId = null;
             try {
                 DataSource dataSource = httpDataSourceFactory.createDataSource();
-                DashManifest dashManifest = DashUtil.loadManifest(dataSource, uri);
+                // Loaded through the cache, the media source does not download the manifest again
+                ManifestCache cache = getPlayerManifestCache();
+                DashManifest dashManifest;
+                if (cache != null) {
+                    ManifestCache.Manifest manifest = cache.load(uri);
+                    // Base URLs are resolved against the URI after redirects, as the media source does
+                    dashManifest = new DashManifestParser().parse(manifest.uri, new ByteArrayInputStream(manifest.data));
+                } else {
+                    dashManifest = DashUtil.loadManifest(dataSource, uri);
+                }
                 DrmInitData drmInitData = DashUtil.loadDrmInitData(dataSource, dashManifest.getPeriod(0));
-                byte[] offlineLicenseKeySetId = licenseStoreDelegate.fetch(drmInitData);
-                if (offlineLicenseKeySetId != null && !isOfflineLicenseExpired(offlineLicenseKeySetId)) {
+                byte[] storedKeySetId = licenseStoreDelegate.fetch(drmInitData);
+                if (storedKeySetId != null && !isOfflineLicenseExpired(storedKeySetId)) {
                     Log.v(TAG, "DRM Restored");
-                    applyOfflineLicense(offlineLicenseKeySetId);
+                    offlineLicenseKeySetId = storedKeySetId;
                     drmRequestOffline = true;
                 } else {
                     Log.v(TAG, "Downloading DRM");
@@ -840,14 +1005,18 @@ public class SRGMediaPlayerController implements Handler.Callback,
                     } else {
                         byte[] keySet = offlineLicenseHelper.downloadLicense(drmInitData);
                         licenseStoreDelegate.store(drmInitData, keySet);
-                        applyOfflineLicense(keySet);
+                        offlineLicenseKeySetId = keySet;
                         drmRequestDuration += SystemClock.elapsedRealtime() - start;
                     }
                 }
+                if (debugMode && offlineLicenseKeySetId != null) {
+                    debugPrintLicenseDurationRemaining(offlineLicenseKeySetId);
+                }
             } catch (Exception e) {
                 Log.e(TAG, "License Download", e);
             } finally {
-                mainHandler.post(prepareViewAndPlayer);
+                // Mode set on the playback thread, ignored if a newer prepare closed the gate again
+                gatedDrmSessionManager.open(gateRequest, offlineLicenseKeySetId);
             }
         });
     }
@@ -923,9 +1092,9 @@ public class SRGMediaPlayerController implements Handler.Callback,
      */
     public void seekTo(@NonNull Mark mark) {
         long position = mark.getPosition();
-        if (mark.getDate() != null) {
+        if (mark.hasDate()) {
             // Convert to a player position
-            position = playerTimeLine.getPosition(mark.getDate().getTime());
+            position = playerTimeLine.getPosition(mark.getTime());
         }
         seekTo(position);
     }
@@ -945,6 +1114,9 @@ public class SRGMediaPlayerController implements Handler.Callback,
      * @param positionMs
      */
     public void seekTo(long positionMs) {
+        if (traceRecorder != null) {
+            traceRecorder.recordSeek(positionMs);
+        }
         Segment blockedSegment = getBlockedSegment(positionMs);
         if (blockedSegment != null) {
             seekEndOfBlockedSegment(blockedSegment);
@@ -964,6 +1136,132 @@ public class SRGMediaPlayerController implements Handler.Callback,
 
     //endregion
 
+    //region queue
+
+    private static final class QueueItem {
+        final Uri uri;
+        @SRGStreamType
+        final int streamType;
+        @Nullable
+        final List<Segment> segments;
+
+        QueueItem(@NonNull Uri uri, @SRGStreamType int streamType, @Nullable List<Segment> segments) {
+            this.uri = uri;
+            this.streamType = streamType;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * Queue a media to be played after the current one, replacing the previously queued media. The player starts
+     * loading it once the current media is buffered until its end, within the buffer limits of the player, so that
+     * playback continues without interruption. {@link Event.Type#QUEUE_ITEM_CHANGE} is sent when it starts playing.
+     * <p>
+     * Not supported when offline licenses are used: the license step runs for the prepared media only, a queued media
+     * would be played with the license mode of the current one.
+     *
+     * @param uri        uri of the media
+     * @param streamType stream type
+     * @param segments   segment list of the media
+     * @throws IllegalStateException if the player has not been prepared or uses offline DRM licenses
+     */
+    public void enqueueNext(@NonNull Uri uri, @SRGStreamType int streamType, @Nullable List<Segment> segments) {
+        if (playlistSource == null || currentQueueItem == null) {
+            throw new IllegalStateException("Player not prepared");
+        }
+        if (drmConfig != null && licenseStoreDelegate != null) {
+            throw new IllegalStateException("Queue not supported with offline DRM licenses");
+        }
+        removeQueuedItems();
+        QueueItem queueItem = new QueueItem(uri, streamType, segments != null ? new ArrayList<>(segments) : null);
+        queueItems.add(queueItem);
+        playlistSource.addMediaSource(createMediaSource(queueItem));
+    }
+
+    /**
+     * Remove the media queued with {@link #enqueueNext(Uri, int, List)}.
+     */
+    public void clearQueue() {
+        if (playlistSource != null) {
+            removeQueuedItems();
+        }
+    }
+
+    /**
+     * @return true if a media has been queued after the current one
+     */
+    public boolean hasNext() {
+        int index = queueItems.indexOf(currentQueueItem);
+        return index >= 0 && index < queueItems.size() - 1;
+    }
+
+    /**
+     * Play the queued media now.
+     *
+     * @return false if no media is queued
+     */
+    public boolean skipToNext() {
+        int nextWindowIndex = exoPlayer.getNextWindowIndex();
+        if (!hasNext() || nextWindowIndex == C.INDEX_UNSET) {
+            return false;
+        }
+        broadcastEvent(Event.Type.WILL_SEEK);
+        exoPlayer.seekToDefaultPosition(nextWindowIndex);
+        return true;
+    }
+
+    private void removeQueuedItems() {
+        int index = queueItems.indexOf(currentQueueItem);
+        if (playlistSource != null && index >= 0 && index < queueItems.size() - 1) {
+            playlistSource.removeMediaSourceRange(index + 1, queueItems.size());
+            queueItems.subList(index + 1, queueItems.size()).clear();
+        }
+    }
+
+    /**
+     * Switch the player state to the item being played, identified by its media source tag.
+     */
+    private void checkQueueItemChange() {
+        Object tag = exoPlayer.getCurrentTag();
+        if (!(tag instanceof QueueItem) || tag == currentQueueItem || !queueItems.contains(tag)) {
+            return;
+        }
+        QueueItem queueItem = (QueueItem) tag;
+        currentQueueItem = queueItem;
+        currentMediaUri = queueItem.uri;
+        currentStreamType = queueItem.streamType;
+        // Previous items will not be played again
+        int index = queueItems.indexOf(queueItem);
+        if (playlistSource != null && index > 0) {
+            playlistSource.removeMediaSourceRange(0, index);
+            queueItems.subList(0, index).clear();
+        }
+
+        userSegmentList.clear();
+        userCompactSegmentList = null;
+        if (queueItem.segments != null) {
+            userSegmentList.addAll(queueItem.segments);
+        }
+        // The projection of the previous item must not be used with the new list
+        invalidatePlayerSegmentList();
+        segmentTracker.clearCurrentSegment();
+        cancelSegmentBoundary();
+        cancelBlockedSegmentSkip();
+        playerTimeLine.update(C.TIME_UNSET, C.TIME_UNSET, false, 0L);
+        updatePlayerTimeLine(exoPlayer.getCurrentTimeline(), exoPlayer.getCurrentManifest());
+        lastPeriodicUpdate = null;
+        playbackActuallyStarted = false;
+        if (traceRecorder != null) {
+            traceRecorder.recordPrepare();
+            traceRecorder.recordTimeline(playerTimeLine);
+            traceRecorder.recordSegmentList(userSegmentList);
+        }
+        broadcastEvent(Event.Type.QUEUE_ITEM_CHANGE);
+        onSegmentListChanged();
+    }
+
+    //endregion
+
     //region initialisation
 
     private void prepareExoplayer(@NonNull Uri videoUri, @Nullable Long playbackStartPosition, int streamType) throws
@@ -977,41 +1275,12 @@ public class SRGMediaPlayerController implements Handler.Callback,
             this.currentMediaUri = videoUri;
             this.currentStreamType = streamType;
 
-            DefaultHttpDataSourceFactory httpDataSourceFactory = new DefaultHttpDataSourceFactory(
-                    userAgent,
-                    getDefaultBandwidthMeter(context),
-                    DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS,
-                    DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS,
-                    true);
-
-            DefaultDataSourceFactory dataSourceFactory = new DefaultDataSourceFactory(context, getDefaultBandwidthMeter(context), httpDataSourceFactory);
-
-            MediaSource mediaSource;
-
-            switch (streamType) {
-                case STREAM_DASH:
-                    // Use DefaultDashChunkSource with workaround that don't crash the application if problem during manifest parsing
-                    // https://github.com/google/ExoPlayer/issues/2795
-                    mediaSource = new DashMediaSource.Factory(new ch.srg.mediaplayer.DefaultDashChunkSource.Factory(dataSourceFactory), dataSourceFactory)
-                            .createMediaSource(videoUri);
-                    break;
-                case STREAM_HLS:
-                    mediaSource = new HlsMediaSource.Factory(new DefaultHlsDataSourceFactory(dataSourceFactory))
-                            .createMediaSource(videoUri);
-                    break;
-                case STREAM_HTTP_PROGRESSIVE:
-                    mediaSource = new ProgressiveMediaSource.Factory(dataSourceFactory)
-                            .createMediaSource(videoUri);
-                    break;
-                case STREAM_LOCAL_FILE:
-                    FileDataSourceFactory fileDataSourceFactory = new FileDataSourceFactory();
-                    mediaSource = new ProgressiveMediaSource.Factory(fileDataSourceFactory)
-                            .createMediaSource(videoUri);
-                    break;
-                default:
-                    throw new IllegalStateException("Invalid source type: " + streamType);
-            }
-            exoPlayer.prepare(mediaSource);
+            QueueItem queueItem = new QueueItem(videoUri, streamType, null);
+            queueItems.clear();
+            queueItems.add(queueItem);
+            currentQueueItem = queueItem;
+            playlistSource = new ConcatenatingMediaSource(createMediaSource(queueItem));
+            exoPlayer.prepare(playlistSource);
             if (playbackStartPosition != null) {
                 try {
                     seekTo(playbackStartPosition);
@@ -1028,6 +1297,43 @@ public class SRGMediaPlayerController implements Handler.Callback,
         }
     }
 
+    @NonNull
+    private MediaSource createMediaSource(@NonNull QueueItem queueItem) {
+        Uri videoUri = queueItem.uri;
+        DefaultDataSourceFactory dataSourceFactory = new DefaultDataSourceFactory(context, getDefaultBandwidthMeter(context), httpDataSourceFactory);
+        ManifestCache manifestCache = getPlayerManifestCache();
+        DataSource.Factory manifestDataSourceFactory = manifestCache != null
+                ? new ManifestCacheDataSource.Factory(manifestCache, dataSourceFactory)
+                : dataSourceFactory;
+
+        switch (queueItem.streamType) {
+            case STREAM_DASH:
+                // Use DefaultDashChunkSource with workaround that don't crash the application if problem during manifest parsing
+                // https://github.com/google/ExoPlayer/issues/2795
+                return new DashMediaSource.Factory(new ch.srg.mediaplayer.DefaultDashChunkSource.Factory(dataSourceFactory), manifestDataSourceFactory)
+                        .setTag(queueItem)
+                        .createMediaSource(videoUri);
+            case STREAM_HLS:
+                HlsDataSourceFactory hlsDataSourceFactory = manifestCache != null
+                        ? new ManifestCacheDataSource.HlsFactory(manifestCache, dataSourceFactory)
+                        : new DefaultHlsDataSourceFactory(dataSourceFactory);
+                return new HlsMediaSource.Factory(hlsDataSourceFactory)
+                        .setTag(queueItem)
+                        .createMediaSource(videoUri);
+            case STREAM_HTTP_PROGRESSIVE:
+                return new ProgressiveMediaSource.Factory(dataSourceFactory)
+                        .setTag(queueItem)
+                        .createMediaSource(videoUri);
+            case STREAM_LOCAL_FILE:
+                FileDataSourceFactory fileDataSourceFactory = new FileDataSourceFactory();
+                return new ProgressiveMediaSource.Factory(fileDataSourceFactory)
+                        .setTag(queueItem)
+                        .createMediaSource(videoUri);
+            default:
+                throw new IllegalStateException("Invalid source type: " + queueItem.streamType);
+        }
+    }
+
     private void setupAkamaiQos(@NonNull Uri videoUri) {
         if (akamaiMediaAnalyticsConfiguration != null) {
             akamaiMediaAnalytics = new AkamaiMediaAnalytics(context, akamaiMediaAnalyticsConfiguration.getAkamaiMediaAnalyticsConfigUrl());
@@ -1044,8 +1350,8 @@ public class SRGMediaPlayerController implements Handler.Callback,
             akamaiMediaAnalytics.handleSessionInit(new PluginCallBacks() {
                 @Override
                 public float streamHeadPosition() {
-                    // Use last known position to workaround threading issues
-                    return lastPeriodicUpdate != null ? lastPeriodicUpdate / 1000f : 0;
+                    // Called on an analytics thread, the player cannot be queried
+                    return playbackClock.getPosition() / 1000f;
                 }
 
                 @Override
@@ -1070,6 +1376,9 @@ public class SRGMediaPlayerController implements Handler.Callback,
      * if you want to play a new video.
      * <p>
      * Remark: The player come in RELEASED state, the resources may not be released immediately (managed by exoplayer)
+     * <p>
+     * A player obtained from a {@link SRGMediaPlayerControllerPool} is reset and returned to the pool instead, it must
+     * not be used afterwards.
      */
     public void release() {
         broadcastEvent(Event.Type.MEDIA_STOPPED);
@@ -1077,7 +1386,115 @@ public class SRGMediaPlayerController implements Handler.Callback,
             ma.handleVisit();
             ma.handleSessionCleanup();
         });
-        doRelease();
+        if (pool == null || state == State.RELEASED || fatalError != null || !pool.recycle(this)) {
+            doRelease();
+        }
+    }
+
+    /*package*/
+    void setPool(@Nullable SRGMediaPlayerControllerPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Bring a player back to the state of a new instance, keeping the ExoPlayer instance and the media session. The
+     * current user receives a last {@link State#RELEASED} state change, then all its listeners are unregistered. The
+     * player gets a new identifier, see {@link #isReleased(String)}.
+     *
+     * @param notifyUser false for a player which has never been handed out, global listeners are not notified of its
+     *                   release
+     */
+    /*package*/
+    void reset(boolean notifyUser) {
+        numberOfDrmRetry = 0;
+        if (mediaPlayerView != null) {
+            unbindFromMediaPlayerView(mediaPlayerView);
+        }
+        if (notifyUser) {
+            setState(State.RELEASED);
+        } else {
+            state = State.RELEASED;
+        }
+        abandonAudioFocus();
+        firePendingEvents();
+        unregisterAllEventListeners();
+        stopPeriodicUpdate();
+        cancelSegmentBoundary();
+        cancelBlockedSegmentSkip();
+        mainHandler.removeMessages(MSG_FIRE_EVENT);
+        Arrays.fill(pendingEvents, null);
+        pendingEventCount = 0;
+        pendingEventTypes = 0;
+
+        // No player callback while the player is emptied
+        exoPlayer.removeListener(this);
+        // Cancels the license step of the previous user
+        openDrmSessionGate();
+        exoPlayer.stop(true);
+        exoPlayer.setPlayWhenReady(false);
+        exoPlayer.addListener(this);
+        exoPlayerCurrentPlayWhenReady = false;
+        muted = false;
+        setVolume(1f);
+        if (mediaSessionConnector != null) {
+            mediaSessionConnector.mediaSession.setActive(false);
+        }
+
+        userSegmentList.clear();
+        userCompactSegmentList = null;
+        invalidatePlayerSegmentList();
+        segmentTracker.clearCurrentSegment();
+        playerTimeLine.update(C.TIME_UNSET, C.TIME_UNSET, false, 0L);
+        playlistSource = null;
+        queueItems.clear();
+        currentQueueItem = null;
+        segmentBoundarySchedulingEnabled = false;
+        segmentEvictionEnabled = false;
+        eventCoalescingEnabled = true;
+        traceRecorder = null;
+        diagnosticRecorder.clear();
+        akamaiMediaAnalytics = null;
+        akamaiMediaAnalyticsConfiguration = null;
+        currentMediaUri = null;
+        fatalError = null;
+        playbackState = null;
+        playingOrBuffering = false;
+        playbackActuallyStarted = false;
+        firstFrameRendered = false;
+        lastPeriodicUpdate = null;
+        playbackClock = PlaybackClock.STOPPED;
+        externalWakeLock = false;
+        pausedBecauseTransientFocusLoss = false;
+        duckedBecauseTransientFocusLoss = false;
+        pausedBecauseFocusLoss = false;
+        mutedBecauseFocusLoss = false;
+        audioFocusBehaviorFlag = AUDIO_FOCUS_FLAG_PAUSE;
+        trackSelector.setParameters(initialTrackSelectorParameters);
+        viewType = ViewType.TYPE_TEXTUREVIEW;
+        surfaceType = SurfaceType.FLAT;
+        debugMode = false;
+        manifestCache = null;
+        if (licenseManifestCache != null) {
+            licenseManifestCache.clear();
+        }
+        licenseStoreDelegate = defaultLicenseStoreDelegate;
+        // Holders of the previous identifier see the player as released
+        controllerId = ++controllerIdCounter;
+        controllerIdString = String.valueOf(controllerId);
+        state = State.IDLE;
+    }
+
+    /**
+     * Called when a pooled player is handed out, it gets a new identifier.
+     */
+    /*package*/
+    void onAcquired(String tag) {
+        this.tag = tag;
+        controllerId = ++controllerIdCounter;
+        controllerIdString = String.valueOf(controllerId);
+        if (mediaSessionConnector != null) {
+            mediaSessionConnector.mediaSession.setActive(true);
+        }
     }
 
     private interface AnalyticsRunner {
@@ -1103,16 +1520,27 @@ public class SRGMediaPlayerController implements Handler.Callback,
                 unbindFromMediaPlayerView(mediaPlayerView);
             }
             setState(State.RELEASED);
+            playbackClock = new PlaybackClock(playbackClock.getPosition(), SystemClock.elapsedRealtime(), playbackClock.getSpeed(), false,
+                    playbackClock.getDuration());
             abandonAudioFocus();
             releaseExoplayer();
+            firePendingEvents();
             unregisterAllEventListeners();
             stopPeriodicUpdate();
+            cancelSegmentBoundary();
+            cancelBlockedSegmentSkip();
             if (offlineLicenseHelper != null) {
                 offlineLicenseHelper.release();
             }
         }
     }
 
+    private void openDrmSessionGate() {
+        if (gatedDrmSessionManager != null) {
+            gatedDrmSessionManager.open();
+        }
+    }
+
     private void releaseExoplayer() {
         exoPlayer.stop();
         // Done after stop to be sure that no event listener are called.
@@ -1122,204 +1550,648 @@ public class SRGMediaPlayerController implements Handler.Callback,
             mediaSessionConnector.mediaSession.setActive(false);
             mediaSessionConnector.mediaSession.release();
         }
-
-        exoPlayer.release();
-        currentMediaUri = null;
-        audioCapabilitiesReceiver.unregister();
+
+        exoPlayer.release();
+        currentMediaUri = null;
+        audioCapabilitiesReceiver.unregister();
+    }
+
+    //endregion
+
+    //region volume control
+
+    public void mute() {
+        setMute(true);
+    }
+
+    public void unmute() {
+        setMute(false);
+    }
+
+    public void setMute(boolean muted) {
+        if (this.muted != muted) {
+            this.muted = muted;
+            setVolume(muted ? 0f : 1f);
+        }
+    }
+
+    public void setVolume(float volume) {
+        exoPlayer.setVolume(volume);
+    }
+
+    //endregion
+
+    //region period update
+    @Nullable
+    private Long lastPeriodicUpdate;
+    @NonNull
+    private volatile PlaybackClock playbackClock = PlaybackClock.STOPPED;
+    /**
+     * Uptime of the scheduled periodic update, C.TIME_UNSET if none.
+     */
+    private long periodicUpdateUptime = C.TIME_UNSET;
+
+    private void stopPeriodicUpdate() {
+        if (isDebugMode()) {
+            // Message built only when logged, called on every pause, buffering and state change
+            logV("Stopping periodic update thread: " + mainHandler);
+        }
+        if (mainHandler != null) {
+            mainHandler.removeMessages(MSG_PERIODIC_UPDATE);
+        }
+        periodicUpdateUptime = C.TIME_UNSET;
+    }
+
+    /**
+     * Schedule the next periodic update according to the playback state, keeping an earlier update already scheduled.
+     *
+     * @param immediate true to update as soon as possible, after a seek for instance
+     */
+    private void schedulePeriodUpdate(boolean immediate) {
+        Handler handler = this.mainHandler;
+        if (handler == null || isReleased()) {
+            return;
+        }
+        long delay = immediate ? 0 : getPeriodicUpdateDelay();
+        if (delay == C.TIME_UNSET) {
+            stopPeriodicUpdate();
+            return;
+        }
+        long uptime = SystemClock.uptimeMillis() + delay;
+        if (periodicUpdateUptime != C.TIME_UNSET && periodicUpdateUptime <= uptime) {
+            return;
+        }
+        handler.removeMessages(MSG_PERIODIC_UPDATE);
+        handler.sendMessageAtTime(handler.obtainMessage(MSG_PERIODIC_UPDATE), uptime);
+        periodicUpdateUptime = uptime;
+    }
+
+    /**
+     * The position only moves while playing, seeks trigger an immediate update. Segments are tracked by the periodic
+     * update unless boundaries are scheduled, the other periodic checks (playback start excepted) can be slow.
+     *
+     * @return delay before the next periodic update, C.TIME_UNSET if none is needed
+     */
+    private long getPeriodicUpdateDelay() {
+        if (!exoPlayer.getPlayWhenReady() || exoPlayer.getPlaybackState() != Player.STATE_READY) {
+            return C.TIME_UNSET;
+        }
+        if (!playbackActuallyStarted || (hasSegments() && !segmentBoundarySchedulingEnabled)) {
+            return UPDATE_PERIOD;
+        }
+        return IDLE_UPDATE_PERIOD;
+    }
+
+    @Override
+    public boolean handleMessage(final Message msg) {
+        switch (msg.what) {
+            case MSG_PERIODIC_UPDATE:
+                periodicUpdateUptime = C.TIME_UNSET;
+                if (!isReleased()) {
+                    periodicUpdate();
+                    schedulePeriodUpdate(false);
+                }
+                return true;
+            case MSG_FIRE_EVENT:
+                firePendingEvents();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void periodicUpdate() {
+        long currentPosition = exoPlayer.getCurrentPosition();
+        long mediaDuration = getMediaDuration();
+        if (lastPeriodicUpdate == null || currentPosition != lastPeriodicUpdate) {
+            if (!isLive() && mediaDuration != C.TIME_UNSET && currentPosition > mediaDuration) {
+                Log.w(TAG,
+                        "Force EoF due to longer subtitle or audio track. position (" + currentPosition + " ms) > duration (" + mediaDuration + " ms).");
+                onPlayerStateChanged(false, ExoPlayer.STATE_ENDED);
+            }
+            if (lastPeriodicUpdate != null && !playbackActuallyStarted && exoPlayer.getPlayWhenReady()) {
+                playbackActuallyStarted = true;
+                broadcastEvent(Event.Type.PLAYBACK_ACTUALLY_STARTED);
+            }
+            if (hasSegments() && !segmentBoundarySchedulingEnabled) {
+                checkSegmentChange(currentPosition);
+            }
+            lastPeriodicUpdate = currentPosition;
+        }
+        // Corrects the drift between the extrapolated and actual positions
+        updatePlaybackClock();
+    }
+
+    /**
+     * Publish the current position, called on the main thread on every change of the position progression.
+     */
+    private void updatePlaybackClock() {
+        if (isReleased()) {
+            return;
+        }
+        boolean playing = exoPlayer.getPlayWhenReady() && exoPlayer.getPlaybackState() == Player.STATE_READY;
+        // Live windows move, their duration does not bound the position
+        long duration = exoPlayer.isCurrentWindowDynamic() ? C.TIME_UNSET : exoPlayer.getDuration();
+        playbackClock = new PlaybackClock(exoPlayer.getCurrentPosition(), SystemClock.elapsedRealtime(),
+                exoPlayer.getPlaybackParameters().speed, playing, duration);
+    }
+
+    /**
+     * Position snapshot of the player, updated on every state change, seek and periodic update. Can be used from any
+     * thread to compute the current position without querying the player.
+     */
+    @NonNull
+    public PlaybackClock getPlaybackClock() {
+        return playbackClock;
+    }
+    //endregion
+
+    //region segments
+
+    /**
+     * CurrentSegment and  block segment MarkRange will change during playback
+     *
+     * @param mediaPosition
+     */
+    private void checkSegmentChange(long mediaPosition) {
+        if (isReleased() && mediaPosition != UNKNOWN_TIME) {
+            return;
+        }
+
+        if (mediaPosition != UNKNOWN_TIME) {
+            if (traceRecorder != null) {
+                traceRecorder.recordPosition(mediaPosition);
+            }
+            // Player relative segment
+            int change = segmentTracker.update(getPlayerSegmentLookup(), mediaPosition);
+            onSegmentTrackerChange(change);
+        }
+    }
+
+    private void onSegmentTrackerChange(int change) {
+        if (change == SegmentTracker.CHANGE_NONE) {
+            return;
+        }
+        Segment segment = change == SegmentTracker.CHANGE_SKIP_BLOCKED
+                ? segmentTracker.getSegmentBeingSkipped()
+                : segmentTracker.getCurrentSegment();
+        if (traceRecorder != null) {
+            traceRecorder.recordSegmentChange(change, segment != null ? segment.getIdentifier() : null);
+        }
+        switch (change) {
+            case SegmentTracker.CHANGE_START:
+                broadcastSegmentEvent(Event.Type.SEGMENT_START, segment);
+                break;
+            case SegmentTracker.CHANGE_END:
+                broadcastSegmentEvent(Event.Type.SEGMENT_END, null);
+                break;
+            case SegmentTracker.CHANGE_SWITCH:
+                broadcastSegmentEvent(Event.Type.SEGMENT_SWITCH, segment);
+                break;
+            case SegmentTracker.CHANGE_SKIP_BLOCKED:
+                Log.v("SegmentTest", "Skipping over " + segment.getIdentifier());
+                seekEndOfBlockedSegment(segment);
+                break;
+        }
+    }
+
+    /**
+     * @return a copy of the segment list in player time
+     */
+    @NonNull
+    public SegmentList getSegments() {
+        if (userCompactSegmentList != null) {
+            return getPlayerCompactSegmentList().toSegmentList();
+        }
+        return new SegmentList(getPlayerSegmentList());
+    }
+
+    private void seekEndOfBlockedSegment(Segment segment) {
+        broadcastBlockedSegmentEvent(Event.Type.SEGMENT_SKIPPED_BLOCKED, segment);
+        seekTo(segment.getMarkOut());
+    }
+
+    @Nullable
+    public Segment getSegment(long time) {
+        return segmentTracker.getSegment(getPlayerSegmentLookup(), time);
+    }
+
+    @Nullable
+    public Segment getCurrentSegment() {
+        return segmentTracker.getCurrentSegment();
+    }
+
+    @Nullable
+    private Segment getBlockedSegment(long time) {
+        SegmentLookup localSubDivision = getPlayerSegmentLookup();
+        return localSubDivision.findBlockedSegmentAtPosition(time);
+    }
+
+    public void setSegmentList(@NonNull List<Segment> segmentList) {
+        userSegmentList.clear();
+        userSegmentList.addAll(segmentList);
+        userCompactSegmentList = null;
+        if (traceRecorder != null) {
+            traceRecorder.recordSegmentList(userSegmentList);
+        }
+        onSegmentListChanged();
+    }
+
+    /**
+     * Set a segment list stored in primitive arrays, for very large segment sets. Segment objects are only created
+     * for the segments the player reports (current, blocked, selected segment) and by {@link #getSegments()}.
+     *
+     * @param segmentList segment list, owned by the player from now on: it must not be modified afterwards and
+     *                    {@link #appendSegments(List)} appends to it. Copying it would defeat its purpose.
+     */
+    public void setSegmentList(@NonNull CompactSegmentList segmentList) {
+        userSegmentList.clear();
+        userCompactSegmentList = segmentList;
+        if (traceRecorder != null) {
+            traceRecorder.recordSegmentList(segmentList);
+        }
+        onSegmentListChanged();
+    }
+
+    /**
+     * Append segments at the end of the segment list, without rebuilding it. Sends {@link Event.Type#SEGMENTS_ADDED}.
+     * Segments are appended to the {@link CompactSegmentList} given to {@link #setSegmentList(CompactSegmentList)},
+     * if any.
+     *
+     * @param segments segments to append
+     */
+    public void appendSegments(@NonNull List<Segment> segments) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        if (traceRecorder != null) {
+            traceRecorder.recordSegmentsAdded(segments);
+        }
+        List<Segment> addedSegments = new ArrayList<>(segments.size());
+        if (userCompactSegmentList != null) {
+            for (Segment segment : segments) {
+                userCompactSegmentList.add(segment);
+                addedSegments.add(toPlayerSegment(segment));
+            }
+            // The player time copy is rebuilt lazily when the list has dates
+            playerCompactSegmentList = null;
+        } else {
+            for (Segment segment : segments) {
+                Segment playerSegment = toPlayerSegment(segment);
+                userSegmentList.add(segment);
+                if (playerSegmentList != null) {
+                    playerSegmentList.add(playerSegment);
+                }
+                addedSegments.add(playerSegment);
+            }
+        }
+        onSegmentsChanged(Event.Type.SEGMENTS_ADDED, addedSegments);
+    }
+
+    /**
+     * Replace the segment with the same identifier. Sends {@link Event.Type#SEGMENTS_UPDATED}. Not supported with a
+     * {@link CompactSegmentList}.
+     *
+     * @param segment new segment value
+     * @return false if no segment has this identifier
+     */
+    public boolean updateSegment(@NonNull Segment segment) {
+        checkSegmentListMutable();
+        int index = indexOfSegment(segment.getIdentifier());
+        if (index < 0) {
+            return false;
+        }
+        Segment playerSegment = toPlayerSegment(segment);
+        userSegmentList.set(index, segment);
+        if (playerSegmentList != null) {
+            playerSegmentList.set(index, playerSegment);
+        }
+        segmentTracker.onSegmentUpdated(playerSegment);
+        if (traceRecorder != null) {
+            traceRecorder.recordSegmentUpdated(segment);
+        }
+        onSegmentsChanged(Event.Type.SEGMENTS_UPDATED, Collections.singletonList(playerSegment));
+        return true;
+    }
+
+    /**
+     * Remove the segments with the given identifiers. Sends {@link Event.Type#SEGMENTS_REMOVED} if any segment has
+     * been removed. Not supported with a {@link CompactSegmentList}.
+     *
+     * @param identifiers identifiers of the segments to remove
+     */
+    public void removeSegments(@NonNull Collection<String> identifiers) {
+        checkSegmentListMutable();
+        Set<String> removedIdentifiers = new HashSet<>(identifiers);
+        int size = userSegmentList.size();
+        List<Segment> removedSegments = new ArrayList<>();
+        List<Segment> keptSegments = new ArrayList<>(size);
+        List<Segment> keptPlayerSegments = playerSegmentList != null ? new ArrayList<>(size) : null;
+        for (int i = 0; i < size; i++) {
+            Segment segment = userSegmentList.get(i);
+            Segment playerSegment = playerSegmentList != null ? playerSegmentList.get(i) : null;
+            if (removedIdentifiers.contains(segment.getIdentifier())) {
+                removedSegments.add(playerSegment != null ? playerSegment : toPlayerSegment(segment));
+            } else {
+                keptSegments.add(segment);
+                if (keptPlayerSegments != null) {
+                    keptPlayerSegments.add(playerSegment);
+                }
+            }
+        }
+        if (!removedSegments.isEmpty()) {
+            // Rebuilt once, the indexes are updated on the next lookup
+            userSegmentList.clear();
+            userSegmentList.addAll(keptSegments);
+            if (playerSegmentList != null) {
+                playerSegmentList.clear();
+                playerSegmentList.addAll(keptPlayerSegments);
+            }
+            if (traceRecorder != null) {
+                traceRecorder.recordSegmentsRemoved(identifiers);
+            }
+            onSegmentsChanged(Event.Type.SEGMENTS_REMOVED, removedSegments);
+        }
+    }
+
+    /**
+     * Remove date segments as soon as they end before the start of the player time line (DVR window), so that the
+     * segment list of long running live sessions does not grow without bound. Evicted segments are reported with
+     * {@link Event.Type#SEGMENTS_REMOVED}, in the player time of the time line before the change, as last returned by
+     * {@link #getSegments()}. Disabled by default, not supported with a {@link CompactSegmentList}.
+     *
+     * @param enabled true to evict segments
+     */
+    public void setSegmentEvictionEnabled(boolean enabled) {
+        segmentEvictionEnabled = enabled;
+    }
+
+    public boolean isSegmentEvictionEnabled() {
+        return segmentEvictionEnabled;
+    }
+
+    /**
+     * Must be called before the player segment list is invalidated.
+     *
+     * @param previousTimeLine time line before the change
+     * @return the evicted segments in the player time of the previous time line, null if none
+     */
+    @Nullable
+    private List<Segment> evictSegmentsBehindTimeLine(@NonNull MediaPlayerTimeLine previousTimeLine) {
+        long startTimeMs = playerTimeLine.getStartTimeMs();
+        if (userCompactSegmentList != null || startTimeMs == C.TIME_UNSET) {
+            return null;
+        }
+        // Still the projection of the previous time line, if built
+        SegmentList previousPlayerSegments = playerSegmentList;
+        List<Segment> evictedSegments = null;
+        List<Segment> keptSegments = null;
+        int size = userSegmentList.size();
+        for (int i = 0; i < size; i++) {
+            Segment segment = userSegmentList.get(i);
+            Mark markOut = segment.getMarkOut();
+            if (markOut.hasDate() && markOut.getTime() < startTimeMs) {
+                if (evictedSegments == null) {
+                    evictedSegments = new ArrayList<>();
+                    keptSegments = new ArrayList<>(userSegmentList.subList(0, i));
+                }
+                evictedSegments.add(previousPlayerSegments != null ? previousPlayerSegments.get(i) : segment.toPlayerPositions(previousTimeLine));
+            } else if (keptSegments != null) {
+                keptSegments.add(segment);
+            }
+        }
+        if (evictedSegments == null) {
+            return null;
+        }
+        // Rebuilt once, the indexes are updated on the next lookup
+        userSegmentList.clear();
+        userSegmentList.addAll(keptSegments);
+        if (traceRecorder != null) {
+            List<String> identifiers = new ArrayList<>(evictedSegments.size());
+            for (Segment segment : evictedSegments) {
+                identifiers.add(segment.getIdentifier());
+            }
+            traceRecorder.recordSegmentsRemoved(identifiers);
+        }
+        return evictedSegments;
     }
 
-    //endregion
-
-    //region volume control
-
-    public void mute() {
-        setMute(true);
+    private void checkSegmentListMutable() {
+        if (userCompactSegmentList != null) {
+            throw new IllegalStateException("Compact segment lists only support appending segments");
+        }
     }
 
-    public void unmute() {
-        setMute(false);
+    private int indexOfSegment(@Nullable String identifier) {
+        return identifier != null ? userSegmentList.indexOfIdentifier(identifier) : -1;
     }
 
-    public void setMute(boolean muted) {
-        if (this.muted != muted) {
-            this.muted = muted;
-            setVolume(muted ? 0f : 1f);
+    private void onSegmentsChanged(Event.Type type, @NonNull List<Segment> changedSegments) {
+        checkSegmentChange(getMediaPosition());
+        scheduleNextSegmentBoundary();
+        scheduleNextBlockedSegmentSkip();
+        schedulePeriodUpdate(false);
+        if (hasEventListeners(type)) {
+            broadcastEvent(new Event(this, type, changedSegments));
         }
     }
 
-    public void setVolume(float volume) {
-        exoPlayer.setVolume(volume);
+    private void onSegmentListChanged() {
+        invalidatePlayerSegmentList();
+        checkSegmentChange(getMediaPosition());
+        scheduleNextSegmentBoundary();
+        scheduleNextBlockedSegmentSkip();
+        schedulePeriodUpdate(false);
+        broadcastEvent(Event.Type.SEGMENT_LIST_CHANGE);
     }
 
-    //endregion
-
-    //region period update
-    @Nullable
-    private Long lastPeriodicUpdate;
+    /**
+     * Detect segment start, end, switch and blocked segments exactly when playback reaches a segment boundary, using
+     * player messages, instead of polling the position with the periodic update. Disabled by default.
+     *
+     * @param enabled true to schedule segment boundaries
+     */
+    public void setSegmentBoundarySchedulingEnabled(boolean enabled) {
+        if (segmentBoundarySchedulingEnabled != enabled) {
+            segmentBoundarySchedulingEnabled = enabled;
+            if (enabled) {
+                scheduleNextSegmentBoundary();
+            } else {
+                cancelSegmentBoundary();
+                schedulePeriodUpdate(false);
+            }
+        }
+    }
 
-    private void startPeriodicUpdateThreadIfNecessary() {
-        schedulePeriodUpdate();
+    public boolean isSegmentBoundarySchedulingEnabled() {
+        return segmentBoundarySchedulingEnabled;
     }
 
-    private void stopPeriodicUpdate() {
-        logV("Stopping periodic update thread: " + mainHandler);
-        if (mainHandler != null) {
-            mainHandler.removeMessages(MSG_PERIODIC_UPDATE);
+    /**
+     * Check the current segment and schedule the next boundary and blocked segment after the position changed
+     * without playback (seek, discontinuity, time line update).
+     */
+    private void resyncSegmentBoundary() {
+        if (isReleased()) {
+            return;
+        }
+        if (segmentBoundarySchedulingEnabled) {
+            if (hasSegments()) {
+                checkSegmentChange(getMediaPosition());
+            }
+            scheduleNextSegmentBoundary();
         }
+        scheduleNextBlockedSegmentSkip();
     }
 
-    private void schedulePeriodUpdate() {
-        Handler handler = this.mainHandler;
-        if (handler != null) {
-            handler.removeMessages(MSG_PERIODIC_UPDATE);
-            handler.sendMessageDelayed(handler.obtainMessage(MSG_PERIODIC_UPDATE), UPDATE_PERIOD);
+    private void scheduleNextSegmentBoundary() {
+        cancelSegmentBoundary();
+        if (!segmentBoundarySchedulingEnabled || isReleased() || !hasSegments()) {
+            return;
+        }
+        long boundary = getPlayerSegmentLookup().findNextBoundary(getMediaPosition());
+        if (boundary != C.TIME_UNSET) {
+            segmentBoundaryMessage = exoPlayer.createMessage((messageType, payload) -> onSegmentBoundaryReached((Long) payload))
+                    .setPosition(boundary)
+                    .setPayload(boundary)
+                    .setHandler(mainHandler)
+                    .setDeleteAfterDelivery(true)
+                    .send();
         }
     }
 
-    @Override
-    public boolean handleMessage(final Message msg) {
-        if (!isReleased()) {
-            periodicUpdate();
-            schedulePeriodUpdate();
+    private void cancelSegmentBoundary() {
+        if (segmentBoundaryMessage != null) {
+            segmentBoundaryMessage.cancel();
+            segmentBoundaryMessage = null;
         }
-        return false;
     }
 
-    private void periodicUpdate() {
-        long currentPosition = exoPlayer.getCurrentPosition();
-        long mediaDuration = getMediaDuration();
-        if (lastPeriodicUpdate == null || currentPosition != lastPeriodicUpdate) {
-            if (!isLive() && mediaDuration != C.TIME_UNSET && currentPosition > mediaDuration) {
-                Log.w(TAG,
-                        "Force EoF due to longer subtitle or audio track. position (" + currentPosition + " ms) > duration (" + mediaDuration + " ms).");
-                onPlayerStateChanged(false, ExoPlayer.STATE_ENDED);
-            }
-            if (lastPeriodicUpdate != null && !playbackActuallyStarted && exoPlayer.getPlayWhenReady()) {
-                playbackActuallyStarted = true;
-                broadcastEvent(Event.Type.PLAYBACK_ACTUALLY_STARTED);
-            }
-            if (!userSegmentList.isEmpty()) {
-                checkSegmentChange(currentPosition);
-            }
-            lastPeriodicUpdate = currentPosition;
+    private void onSegmentBoundaryReached(long boundary) {
+        segmentBoundaryMessage = null;
+        if (!isReleased()) {
+            checkSegmentChange(Math.max(getMediaPosition(), boundary));
+            scheduleNextSegmentBoundary();
         }
     }
-    //endregion
-
-    //region segments
 
     /**
-     * CurrentSegment and  block segment MarkRange will change during playback
-     *
-     * @param mediaPosition
+     * Blocked segments are known ahead of time: instead of waiting for the periodic update (or the boundary message)
+     * to notice playback is inside one, a player message is sent at the mark in of the next blocked segment so that
+     * the seek to its mark out is requested as soon as it starts. When the mark out is already buffered, the player
+     * seeks inside its buffer and the skip does not rebuffer.
      */
-    private void checkSegmentChange(long mediaPosition) {
-        if (isReleased() && mediaPosition != UNKNOWN_TIME) {
+    private void scheduleNextBlockedSegmentSkip() {
+        cancelBlockedSegmentSkip();
+        if (isReleased() || !hasSegments()) {
             return;
         }
-
-        if (mediaPosition != UNKNOWN_TIME) {
-            // Player relative segment
-            Segment blockedSegment = getBlockedSegment(mediaPosition);
-            Segment newSegment = getSegment(mediaPosition);
-
-            if (blockedSegment != null) {
-                if (!Segment.equalIdentifier(blockedSegment, segmentBeingSkipped)) {
-                    Log.v("SegmentTest", "Skipping over " + blockedSegment.getIdentifier());
-                    segmentBeingSkipped = blockedSegment;
-                    seekEndOfBlockedSegment(blockedSegment);
-                }
-            } else {
-                segmentBeingSkipped = null;
-                if (!Segment.equalIdentifier(currentSegment, newSegment)) {
-                    if (currentSegment == null) {
-                        broadcastSegmentEvent(Event.Type.SEGMENT_START, newSegment);
-                    } else if (newSegment == null) {
-                        broadcastSegmentEvent(Event.Type.SEGMENT_END, null);
-                    } else {
-                        broadcastSegmentEvent(Event.Type.SEGMENT_SWITCH, newSegment);
-                    }
-                    currentSegment = newSegment;
-                }
-            }
+        Segment blockedSegment = getPlayerSegmentLookup().findNextBlockedSegment(getMediaPosition());
+        if (blockedSegment != null) {
+            long markIn = blockedSegment.getMarkIn().getPosition();
+            blockedSegmentMessage = exoPlayer.createMessage((messageType, payload) -> onBlockedSegmentReached((Long) payload))
+                    .setPosition(markIn)
+                    .setPayload(markIn)
+                    .setHandler(mainHandler)
+                    .setDeleteAfterDelivery(true)
+                    .send();
         }
     }
 
-    @NonNull
-    public SegmentList getSegments() {
-        return getPlayerSegmentList();
-    }
-
-    private void seekEndOfBlockedSegment(Segment segment) {
-        broadcastBlockedSegmentEvent(Event.Type.SEGMENT_SKIPPED_BLOCKED, segment);
-        seekTo(segment.getMarkOut());
+    private void cancelBlockedSegmentSkip() {
+        if (blockedSegmentMessage != null) {
+            blockedSegmentMessage.cancel();
+            blockedSegmentMessage = null;
+        }
     }
 
-    @Nullable
-    public Segment getSegment(long time) {
-        SegmentList localSubDivision = getPlayerSegmentList();
-        if (currentSegment != null && localSubDivision.findSegmentById(currentSegment.getIdentifier()) != null
-                && time >= currentSegment.getMarkIn().getPosition() - SEGMENT_HYSTERESIS_MS
-                && time < currentSegment.getMarkOut().getPosition()) {
-            return currentSegment;
+    private void onBlockedSegmentReached(long markIn) {
+        blockedSegmentMessage = null;
+        if (isReleased()) {
+            return;
+        }
+        if (traceRecorder != null) {
+            traceRecorder.recordBlockedSegmentReached(markIn);
+        }
+        int change = segmentTracker.onBlockedSegmentReached(getPlayerSegmentLookup(), markIn);
+        if (change != SegmentTracker.CHANGE_NONE) {
+            onSegmentTrackerChange(change);
+        } else {
+            scheduleNextBlockedSegmentSkip();
         }
-        return localSubDivision.findSegmentAtPosition(time);
     }
 
-    @Nullable
-    public Segment getCurrentSegment() {
-        return currentSegment;
+    /**
+     * Convert user definition segment to a Player time reference segment markIn and markOut. The conversion is cached
+     * until the user segments or the player time line change, the returned list must not be modified.
+     */
+    @NonNull
+    private SegmentList getPlayerSegmentList() {
+        if (playerSegmentList == null) {
+            playerSegmentList = createPlayerSegmentList();
+        }
+        return playerSegmentList;
     }
 
-    @Nullable
-    private Segment getBlockedSegment(long time) {
-        SegmentList localSubDivision = getPlayerSegmentList();
-        return localSubDivision.findBlockedSegmentAtPosition(time);
+    private void invalidatePlayerSegmentList() {
+        playerSegmentList = null;
+        playerCompactSegmentList = null;
     }
 
-    public void setSegmentList(@NonNull List<Segment> segmentList) {
-        userSegmentList.clear();
-        userSegmentList.addAll(segmentList);
-        checkSegmentChange(getMediaPosition());
-        broadcastEvent(Event.Type.SEGMENT_LIST_CHANGE);
+    @NonNull
+    private CompactSegmentList getPlayerCompactSegmentList() {
+        if (playerCompactSegmentList == null) {
+            playerCompactSegmentList = userCompactSegmentList.toPlayerPositions(playerTimeLine);
+        }
+        return playerCompactSegmentList;
     }
 
     /**
-     * Convert user definition segment to a Player time reference segment markIn and markOut
+     * @return player time segments, from the compact segment list if one is set
      */
-    private SegmentList getPlayerSegmentList() {
+    @NonNull
+    private SegmentLookup getPlayerSegmentLookup() {
+        return userCompactSegmentList != null ? getPlayerCompactSegmentList() : getPlayerSegmentList();
+    }
+
+    private boolean hasSegments() {
+        return userCompactSegmentList != null ? !userCompactSegmentList.isEmpty() : !userSegmentList.isEmpty();
+    }
+
+    @NonNull
+    private SegmentList createPlayerSegmentList() {
         SegmentList playerTimeSegmentList = new SegmentList(userSegmentList.size());
         for (Segment segment : userSegmentList) {
-            if (segment.getMarkIn().getDate() != null && segment.getMarkOut().getDate() != null) {
-                long markIn = playerTimeLine.getPosition(segment.getMarkIn().getDate().getTime());
-                long markOut = playerTimeLine.getPosition(segment.getMarkOut().getDate().getTime());
-                Segment segmentPlayer = new Segment(
-                        segment.getIdentifier(),
-                        segment.getTitle(), segment.getDescription(), segment.getImageUrl(), segment.getBlockingReason(), markIn, markOut, segment.getDuration(), segment.isDisplayable(), segment.isLive(), segment.is360());
-                playerTimeSegmentList.add(segmentPlayer);
-            } else {
-                playerTimeSegmentList.add(segment);
-            }
+            playerTimeSegmentList.add(toPlayerSegment(segment));
         }
         return playerTimeSegmentList;
     }
 
+    @NonNull
+    private Segment toPlayerSegment(@NonNull Segment segment) {
+        return segment.toPlayerPositions(playerTimeLine);
+    }
+
     private void broadcastSegmentEvent(Event.Type type, Segment segment) {
-        broadcastEvent(new Event(this, type, null, segment));
+        if (hasEventListeners(type)) {
+            broadcastEvent(new Event(this, type, null, segment));
+        }
     }
 
     @SuppressWarnings("SameParameterValue")
     private void broadcastBlockedSegmentEvent(Event.Type type, Segment segment) {
-        broadcastEvent(new Event(this, type, null, segment, segment.getBlockingReason()));
+        if (hasEventListeners(type)) {
+            broadcastEvent(new Event(this, type, null, segment, segment.getBlockingReason()));
+        }
     }
 
     /**
-     * @param segment a player segment {@link SRGMediaPlayerController#getPlayerSegmentList()}
+     * @param segment a player segment {@link SRGMediaPlayerController#getPlayerSegmentLookup()}
      * @return true if it changed segment
      */
     private boolean switchToSegment(Segment segment) {
-        if (segment.getMarkIn().getDate() != null) {
-            long markInTime = segment.getMarkIn().getDate().getTime();
+        if (segment.getMarkIn().hasDate()) {
+            long markInTime = segment.getMarkIn().getTime();
             if (markInTime > playerTimeLine.getStartTimeMs() + playerTimeLine.getDurationMs())
                 return false;
         }
@@ -1338,7 +2210,7 @@ public class SRGMediaPlayerController implements Handler.Callback,
      * @return true if segment found and switch occurred
      */
     public boolean switchToSegment(String identifier) {
-        Segment segment = getPlayerSegmentList().findSegmentById(identifier);
+        Segment segment = getPlayerSegmentLookup().findSegmentById(identifier);
         if (segment != null) {
             return switchToSegment(segment);
         }
@@ -1359,7 +2231,9 @@ public class SRGMediaPlayerController implements Handler.Callback,
         boolean playWhenReady = exoPlayer.getPlayWhenReady();
         final boolean lock = externalWakeLock ||
                 ((playbackState == Player.STATE_READY || playbackState == Player.STATE_BUFFERING) && playWhenReady);
-        logV("Scheduling change keepScreenOn currently attached mediaPlayerView to " + lock + state + " " + playbackState + " " + playWhenReady);
+        if (isDebugMode()) {
+            logV("Scheduling change keepScreenOn currently attached mediaPlayerView to " + lock + state + " " + playbackState + " " + playWhenReady);
+        }
         if (currentViewKeepScreenOn != lock) {
             currentViewKeepScreenOn = lock;
             if (mediaPlayerView != null) {
@@ -1689,7 +2563,9 @@ public class SRGMediaPlayerController implements Handler.Callback,
     private void setState(State state) {
         if (this.state != state) {
             this.state = state;
-            broadcastEvent(Event.buildStateEvent(this));
+            if (hasEventListeners(Event.Type.STATE_CHANGE)) {
+                broadcastEvent(Event.buildStateEvent(this));
+            }
         }
     }
 
@@ -1701,7 +2577,33 @@ public class SRGMediaPlayerController implements Handler.Callback,
      */
     public void registerEventListener(Listener listener) {
         if (listener != null) {
-            eventListeners.add(listener);
+            eventListeners.add(listener, ListenerRegistry.ALL_TYPES, null);
+        }
+    }
+
+    /**
+     * Register a listener on some of the events fired by this SRGMediaPlayerController. Events of other types are
+     * not delivered to this listener, and not built at all if no other listener receives them. Registering an
+     * already registered listener changes its types. WARNING, The listener is stored in a Weak set.
+     *
+     * @param listener the listener.
+     * @param types    event types delivered to the listener.
+     */
+    public void registerEventListener(Listener listener, @NonNull EnumSet<Event.Type> types) {
+        registerEventListener(listener, types, null);
+    }
+
+    /**
+     * Register a listener on some of the events fired by this SRGMediaPlayerController, delivered on a background
+     * thread by an {@link AsyncEventDispatcher}. WARNING, The listener is stored in a Weak set.
+     *
+     * @param listener   the listener.
+     * @param types      event types delivered to the listener.
+     * @param dispatcher dispatcher delivering the events, null to deliver them on the main thread.
+     */
+    public void registerEventListener(Listener listener, @NonNull EnumSet<Event.Type> types, @Nullable AsyncEventDispatcher dispatcher) {
+        if (listener != null) {
+            eventListeners.add(listener, getTypeMask(types), dispatcher);
         }
     }
 
@@ -1727,7 +2629,32 @@ public class SRGMediaPlayerController implements Handler.Callback,
      * @return true if the listener was registered.
      */
     public static boolean registerGlobalEventListener(Listener listener) {
-        return globalEventListeners.add(listener);
+        return globalEventListeners.add(listener, ListenerRegistry.ALL_TYPES, null);
+    }
+
+    /**
+     * Register a global listener on some of the events fired by all (current and future) SRGMediaPlayerControllers.
+     * Registering an already registered listener changes its types.
+     *
+     * @param listener the global listener.
+     * @param types    event types delivered to the listener.
+     * @return true if the listener was registered, false if only its types have been changed.
+     */
+    public static boolean registerGlobalEventListener(Listener listener, @NonNull EnumSet<Event.Type> types) {
+        return registerGlobalEventListener(listener, types, null);
+    }
+
+    /**
+     * Register a global listener on some of the events fired by all (current and future) SRGMediaPlayerControllers,
+     * delivered on a background thread by an {@link AsyncEventDispatcher}.
+     *
+     * @param listener   the global listener.
+     * @param types      event types delivered to the listener.
+     * @param dispatcher dispatcher delivering the events, null to deliver them on the main thread.
+     * @return true if the listener was registered, false if only its registration has been changed.
+     */
+    public static boolean registerGlobalEventListener(Listener listener, @NonNull EnumSet<Event.Type> types, @Nullable AsyncEventDispatcher dispatcher) {
+        return globalEventListeners.add(listener, getTypeMask(types), dispatcher);
     }
 
     /**
@@ -1743,26 +2670,120 @@ public class SRGMediaPlayerController implements Handler.Callback,
     private void broadcastFatalError(SRGMediaPlayerException e, boolean override) {
         if (override || fatalError == null) {
             this.fatalError = e;
-            broadcastEvent(Event.buildErrorEvent(this, true, e));
+            if (hasEventListeners(Event.Type.FATAL_ERROR)) {
+                broadcastEvent(Event.buildErrorEvent(this, true, e));
+            }
         }
     }
 
     private void broadcastEvent(Event.Type eventType) {
+        if (!hasEventListeners(eventType)) {
+            return;
+        }
+        long typeBit = ListenerRegistry.typeBit(eventType);
+        if (eventCoalescingEnabled && (COALESCED_EVENT_TYPES & typeBit) != 0) {
+            if ((pendingEventTypes & typeBit) == 0) {
+                if (pendingEventCount == 0) {
+                    // Fired right after the current message, once for each type
+                    mainHandler.sendMessageAtFrontOfQueue(mainHandler.obtainMessage(MSG_FIRE_EVENT));
+                }
+                pendingEventTypes |= typeBit;
+                pendingEvents[pendingEventCount++] = eventType;
+            }
+            return;
+        }
         broadcastEvent(Event.buildEvent(this, eventType));
     }
 
+    private void firePendingEvents() {
+        if (pendingEventCount == 0) {
+            return;
+        }
+        mainHandler.removeMessages(MSG_FIRE_EVENT);
+        // One at a time, listeners may produce events while they are called
+        while (pendingEventCount > 0) {
+            Event.Type eventType = pendingEvents[0];
+            pendingEventCount--;
+            System.arraycopy(pendingEvents, 1, pendingEvents, 0, pendingEventCount);
+            pendingEvents[pendingEventCount] = null;
+            pendingEventTypes &= ~ListenerRegistry.typeBit(eventType);
+            if (hasEventListeners(eventType)) {
+                // Built now, with the state after all the changes
+                dispatchEvent(Event.buildEvent(this, eventType));
+            }
+        }
+    }
+
+    /**
+     * Merge the {@link Event.Type#LOADING_STATE_CHANGED} events produced while handling one player callback or message
+     * into one event, sent right after with the resulting state, and before any other event. Enabled by default.
+     *
+     * @param enabled false to send every event immediately
+     */
+    public void setEventCoalescingEnabled(boolean enabled) {
+        eventCoalescingEnabled = enabled;
+    }
+
+    public boolean isEventCoalescingEnabled() {
+        return eventCoalescingEnabled;
+    }
+
+    /**
+     * @return false if no listener receives events of this type, the event does not need to be built
+     */
+    private boolean hasEventListeners(Event.Type eventType) {
+        long typeBit = ListenerRegistry.typeBit(eventType);
+        return globalEventListeners.accepts(typeBit) || eventListeners.accepts(typeBit);
+    }
+
+    private static long getTypeMask(@NonNull Set<Event.Type> types) {
+        long typeMask = 0;
+        for (Event.Type type : types) {
+            typeMask |= ListenerRegistry.typeBit(type);
+        }
+        return typeMask;
+    }
+
     private void broadcastEvent(final Event event) {
-        int count = SRGMediaPlayerController.globalEventListeners.size() + this.eventListeners.size();
-        final Set<Listener> eventListeners = new HashSet<>(count);
-        Log.d(TAG, "Posting event: " + event + " to " + count);
-        eventListeners.addAll(globalEventListeners);
-        eventListeners.addAll(this.eventListeners);
+        // Coalesced events produced before are delivered first, to keep the order in which events were produced
+        firePendingEvents();
+        dispatchEvent(event);
+    }
+
+    private void dispatchEvent(final Event event) {
+        ListenerRegistry.Entry<Listener>[] globalListeners = globalEventListeners.getSnapshot();
+        ListenerRegistry.Entry<Listener>[] localListeners = eventListeners.getSnapshot();
+        diagnosticRecorder.record(DiagnosticRecorder.KIND_EVENT, event.type.ordinal(), event.mediaPosition,
+                globalListeners.length + localListeners.length);
+        if (traceRecorder != null) {
+            traceRecorder.recordEvent(event.type.ordinal(), event.mediaPosition);
+        }
 
         if (isDebugMode() && Looper.getMainLooper() != Looper.myLooper()) {
             throw new IllegalStateException("expected main thread");
         }
-        for (Listener listener : eventListeners) {
-            listener.onMediaPlayerEvent(SRGMediaPlayerController.this, event);
+        long typeBit = ListenerRegistry.typeBit(event.type);
+        for (ListenerRegistry.Entry<Listener> entry : globalListeners) {
+            Listener listener = entry.get();
+            if (listener != null && entry.accepts(typeBit)) {
+                deliverEvent(entry, listener, event);
+            }
+        }
+        for (ListenerRegistry.Entry<Listener> entry : localListeners) {
+            Listener listener = entry.get();
+            // A listener registered both globally and locally is only called once
+            if (listener != null && entry.accepts(typeBit)
+                    && !ListenerRegistry.accepts(globalListeners, listener, typeBit)) {
+                deliverEvent(entry, listener, event);
+            }
+        }
+    }
+
+    private void deliverEvent(@NonNull ListenerRegistry.Entry<Listener> entry, @NonNull Listener listener, @NonNull Event event) {
+        if (entry.dispatcher != null) {
+            entry.dispatcher.post(this, listener, event);
+        } else {
+            listener.onMediaPlayerEvent(this, event);
         }
     }
 
@@ -1905,6 +2926,64 @@ public class SRGMediaPlayerController implements Handler.Callback,
         return debugMode;
     }
 
+    /**
+     * @return the last events dispatched and player state changes of this player
+     */
+    @NonNull
+    public DiagnosticRecorder getDiagnosticRecorder() {
+        return diagnosticRecorder;
+    }
+
+    /**
+     * Record the inputs and outputs of this player to a binary trace, to be replayed with
+     * {@link ch.srg.mediaplayer.trace.TraceReplayer}. Only events sent while listeners are registered are recorded.
+     * Set it before {@link #prepare(Uri, Long, int, List, Segment)} to replay a whole playback, the current segment
+     * is not part of the recorded state.
+     *
+     * @param traceRecorder recorder, null to stop recording. The previous recorder is flushed, not closed.
+     */
+    public void setTraceRecorder(@Nullable TraceRecorder traceRecorder) {
+        if (this.traceRecorder != null) {
+            this.traceRecorder.flush();
+        }
+        this.traceRecorder = traceRecorder;
+        if (traceRecorder != null) {
+            // Start from the current state
+            traceRecorder.recordPrepare();
+            traceRecorder.recordTimeline(playerTimeLine);
+            if (userCompactSegmentList != null) {
+                traceRecorder.recordSegmentList(userCompactSegmentList);
+            } else {
+                traceRecorder.recordSegmentList(userSegmentList);
+            }
+        }
+    }
+
+    @Nullable
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Serve the first DASH manifest or HLS master playlist request of the next prepared medias from a cache, filled
+     * with {@link ManifestCache#prefetch(Uri)} when the next media is known. The cache can be shared by several players.
+     *
+     * @param manifestCache cache, null to always download manifests
+     */
+    public void setManifestCache(@Nullable ManifestCache manifestCache) {
+        this.manifestCache = manifestCache;
+    }
+
+    @Nullable
+    public ManifestCache getManifestCache() {
+        return manifestCache;
+    }
+
+    @Nullable
+    private ManifestCache getPlayerManifestCache() {
+        return manifestCache != null ? manifestCache : licenseManifestCache;
+    }
+
     public void setDebugMode(boolean debugMode) {
         this.debugMode = debugMode;
     }
@@ -1916,7 +2995,7 @@ public class SRGMediaPlayerController implements Handler.Callback,
     }
 
     public String getControllerId() {
-        return String.valueOf(controllerId);
+        return controllerIdString;
     }
 
     public String getMediaSessionId() {
@@ -1952,6 +3031,18 @@ public class SRGMediaPlayerController implements Handler.Callback,
         return state == State.RELEASED;
     }
 
+    /**
+     * Check if the player is released for a user holding it since it had an identifier. A pooled player is not
+     * released by {@link #release()} but recycled and handed out again, {@link #isReleased()} is then false for
+     * holders of the previous user.
+     *
+     * @param controllerId identifier returned by {@link #getControllerId()} when the player was obtained
+     * @return true when player is released, or has been recycled since
+     */
+    public boolean isReleased(@Nullable String controllerId) {
+        return isReleased() || !controllerIdString.equals(controllerId);
+    }
+
     public boolean isLive() {
         return exoPlayer.isCurrentWindowDynamic();
     }
@@ -2007,6 +3098,15 @@ public class SRGMediaPlayerController implements Handler.Callback,
         return drmConfig;
     }
 
+    /**
+     * @return the HTTP data source factory of this player (user agent, bandwidth meter), to load related resources
+     * with the same HTTP stack
+     */
+    @NonNull
+    public HttpDataSource.Factory getHttpDataSourceFactory() {
+        return httpDataSourceFactory;
+    }
+
     public long getBufferPosition() {
         return exoPlayer.getBufferedPosition();
     }
@@ -2015,6 +3115,13 @@ public class SRGMediaPlayerController implements Handler.Callback,
         return exoPlayer.getBufferedPercentage();
     }
 
+    /**
+     * @return playback speed, 1 for normal speed
+     */
+    public float getPlaybackSpeed() {
+        return exoPlayer.getPlaybackParameters().speed;
+    }
+
     public boolean isBoundToMediaPlayerView() {
         return mediaPlayerView != null;
     }
@@ -2326,13 +3433,40 @@ public class SRGMediaPlayerController implements Handler.Callback,
 
     @Override
     public void onTimelineChanged(Timeline timeline, Object manifest, int reason) {
+        checkQueueItemChange();
+        updatePlayerTimeLine(timeline, manifest);
+        broadcastEvent(Event.Type.STREAM_TIMELINE_CHANGED);
+    }
+
+    /**
+     * Update the time line from the current window.
+     */
+    private void updatePlayerTimeLine(@NonNull Timeline timeline, @Nullable Object manifest) {
+        if (timeline.isEmpty()) {
+            return;
+        }
         timeline.getWindow(exoPlayer.getCurrentWindowIndex(), this.window);
         long liveEdgeDuration = 0L;
         if (window.isDynamic && manifest instanceof HlsManifest) {
             liveEdgeDuration = 30000;
         }
-        playerTimeLine.update(window.windowStartTimeMs, window.getDurationMs(), window.isDynamic, liveEdgeDuration);
-        broadcastEvent(Event.Type.STREAM_TIMELINE_CHANGED);
+        // Evicted segments are reported as they were in the previous time line
+        // Nothing is evicted after a reset, the segments were not in the previous time line
+        MediaPlayerTimeLine previousTimeLine = segmentEvictionEnabled && playerTimeLine.getStartTimeMs() != C.TIME_UNSET
+                ? new MediaPlayerTimeLine(playerTimeLine) : null;
+        if (playerTimeLine.update(window.windowStartTimeMs, window.getDurationMs(), window.isDynamic, liveEdgeDuration)) {
+            if (traceRecorder != null) {
+                traceRecorder.recordTimeline(playerTimeLine);
+            }
+            List<Segment> evictedSegments = previousTimeLine != null ? evictSegmentsBehindTimeLine(previousTimeLine) : null;
+            invalidatePlayerSegmentList();
+            resyncSegmentBoundary();
+            if (evictedSegments != null) {
+                if (hasEventListeners(Event.Type.SEGMENTS_REMOVED)) {
+                    broadcastEvent(new Event(this, Event.Type.SEGMENTS_REMOVED, evictedSegments));
+                }
+            }
+        }
     }
 
 
@@ -2348,7 +3482,11 @@ public class SRGMediaPlayerController implements Handler.Callback,
 
     @Override
     public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
-        Log.v(TAG, toString() + " Exoplayer state change: " + playWhenReady + " " + playbackState);
+        diagnosticRecorder.record(DiagnosticRecorder.KIND_PLAYER_STATE, playbackState, playWhenReady ? 1 : 0,
+                exoPlayer.getCurrentPosition());
+        if (traceRecorder != null) {
+            traceRecorder.recordPlayerState(playbackState, playWhenReady, exoPlayer.getCurrentPosition());
+        }
         if (this.playbackState == null || this.playbackState != playbackState) {
             switch (playbackState) {
                 case Player.STATE_IDLE:
@@ -2368,7 +3506,6 @@ public class SRGMediaPlayerController implements Handler.Callback,
                         playingOrBuffering = true;
                     }
                     setState(State.READY);
-                    startPeriodicUpdateThreadIfNecessary();
                     doAkamaiAnalytics((ma) -> {
                         if (this.playbackState == Player.STATE_BUFFERING) {
                             ma.handleBufferEnd();
@@ -2391,6 +3528,9 @@ public class SRGMediaPlayerController implements Handler.Callback,
             broadcastEvent(Event.Type.PLAYING_STATE_CHANGE);
             this.exoPlayerCurrentPlayWhenReady = playWhenReady;
         }
+        updatePlaybackClock();
+        // Started when playing, stopped when paused or buffering
+        schedulePeriodUpdate(false);
         manageKeepScreenOn();
     }
 
@@ -2403,12 +3543,10 @@ public class SRGMediaPlayerController implements Handler.Callback,
      * Retry exoplayer playback after an error.
      */
     public void retry() {
-        Runnable retry = exoPlayer::retry;
-        if (drmConfig != null && licenseStoreDelegate != null) {
-            downloadOrApplyOfflineLicense(currentMediaUri, retry, drmConfig);
-        } else {
-            retry.run();
+        if (drmConfig != null && licenseStoreDelegate != null && currentMediaUri != null) {
+            downloadOrApplyOfflineLicense(currentMediaUri, drmConfig);
         }
+        exoPlayer.retry();
     }
 
     @Override
@@ -2450,8 +3588,13 @@ public class SRGMediaPlayerController implements Handler.Callback,
 
     @Override
     public void onPositionDiscontinuity(int reason) {
+        // Period transitions and seeks to another window
+        checkQueueItemChange();
         broadcastEvent(Event.Type.POSITION_DISCONTINUITY);
-        Log.w(TAG, "Position discontinuity " + reason);
+        diagnosticRecorder.record(DiagnosticRecorder.KIND_POSITION_DISCONTINUITY, reason, exoPlayer.getCurrentPosition(), 0);
+        resyncSegmentBoundary();
+        updatePlaybackClock();
+        schedulePeriodUpdate(true);
     }
 
     @Override
@@ -2461,13 +3604,14 @@ public class SRGMediaPlayerController implements Handler.Callback,
 
     @Override
     public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
-        // Ignore
+        updatePlaybackClock();
     }
 
     @Override
     public void onSeekProcessed() {
         broadcastEvent(Event.Type.DID_SEEK);
         broadcastEvent(Event.Type.LOADING_STATE_CHANGED);
+        resyncSegmentBoundary();
     }
 
     @Override
@@ -0,0 +1,159 @@
+package ch.srg.mediaplayer;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Keeps players ready to use, to avoid the cost of creating a player (ExoPlayer, renderers, track selector, media
+ * session) when the user starts a playback. Players are created while the main thread is idle, handed out by
+ * {@link #acquire(String)} and returned to the pool by {@link SRGMediaPlayerController#release()}, which resets
+ * them instead of releasing their resources.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class SRGMediaPlayerControllerPool {
+    public interface Factory {
+        /**
+         * Create a player, called on the main thread.
+         *
+         * @param context application context
+         */
+        @NonNull
+        SRGMediaPlayerController create(@NonNull Context context);
+    }
+
+    private final Context context;
+    private final int size;
+    private final Factory factory;
+    private final ArrayDeque<SRGMediaPlayerController> controllers = new ArrayDeque<>();
+    private boolean prewarming;
+    private boolean cleared;
+
+    /**
+     * Create one player per idle main thread pass, until the pool is full.
+     */
+    private final MessageQueue.IdleHandler prewarmIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (!cleared && controllers.size() < size) {
+                SRGMediaPlayerController controller = create();
+                // Same state as a recycled player, media session inactive until acquired. Never used, its release is
+                // not reported.
+                controller.reset(false);
+                controllers.add(controller);
+            }
+            prewarming = !cleared && controllers.size() < size;
+            return prewarming;
+        }
+    };
+
+    /**
+     * @param context context
+     * @param size    maximum number of idle players kept
+     * @param factory creates the players, with the DRM configuration or media session needed by the application
+     */
+    public SRGMediaPlayerControllerPool(@NonNull Context context, int size, @NonNull Factory factory) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid pool size: " + size);
+        }
+        this.context = context.getApplicationContext();
+        this.size = size;
+        this.factory = factory;
+    }
+
+    /**
+     * Pool of players without DRM support.
+     */
+    public SRGMediaPlayerControllerPool(@NonNull Context context, int size) {
+        this(context, size, applicationContext -> new SRGMediaPlayerController(applicationContext, null));
+    }
+
+    /**
+     * Fill the pool while the main thread is idle.
+     */
+    @MainThread
+    public void prewarm() {
+        cleared = false;
+        if (!prewarming && controllers.size() < size) {
+            prewarming = true;
+            Looper.myQueue().addIdleHandler(prewarmIdleHandler);
+        }
+    }
+
+    /**
+     * Get an idle player, or create one if the pool is empty. The pool is refilled during idle time.
+     *
+     * @param tag tag to identify the player
+     */
+    @MainThread
+    @NonNull
+    public SRGMediaPlayerController acquire(@Nullable String tag) {
+        SRGMediaPlayerController controller = controllers.poll();
+        if (controller == null) {
+            controller = create();
+        }
+        controller.onAcquired(tag);
+        if (!cleared) {
+            prewarm();
+        }
+        return controller;
+    }
+
+    /**
+     * @return number of idle players ready to be acquired
+     */
+    @MainThread
+    public int getAvailableCount() {
+        return controllers.size();
+    }
+
+    /**
+     * Release the idle players and stop prewarming. Players acquired before are released normally from now on.
+     */
+    @MainThread
+    public void clear() {
+        cleared = true;
+        if (prewarming) {
+            Looper.myQueue().removeIdleHandler(prewarmIdleHandler);
+            prewarming = false;
+        }
+        SRGMediaPlayerController controller;
+        while ((controller = controllers.poll()) != null) {
+            controller.setPool(null);
+            controller.release();
+        }
+    }
+
+    /**
+     * Called by a released player.
+     *
+     * @return false if the player has not been accepted and must be released
+     */
+    @MainThread
+    boolean recycle(@NonNull SRGMediaPlayerController controller) {
+        if (cleared || controllers.size() >= size) {
+            return false;
+        }
+        controller.reset(true);
+        controllers.add(controller);
+        return true;
+    }
+
+    @NonNull
+    private SRGMediaPlayerController create() {
+        SRGMediaPlayerController controller = factory.create(context);
+        controller.setPool(this);
+        return controller;
+    }
+}
@@ -97,6 +97,12 @@ public class SRGMediaPlayerView extends ViewGroup {
 
     @Nullable
     private View videoRenderingView;
+    /**
+     * Last size string returned by {@link #getVideoRenderingViewSizeString()}, built again only when the size changes.
+     */
+    private String videoRenderingViewSizeString = UNKNOWN_DIMENSION;
+    private int videoRenderingViewSizeWidth;
+    private int videoRenderingViewSizeHeight;
 
     @Nullable
     private ScaleModeListener scaleModeListener;
@@ -219,7 +225,14 @@ public class SRGMediaPlayerView extends ViewGroup {
 
     public String getVideoRenderingViewSizeString() {
         if (videoRenderingView != null) {
-            return videoRenderingView.getWidth() + "x" + videoRenderingView.getHeight();
+            int width = videoRenderingView.getWidth();
+            int height = videoRenderingView.getHeight();
+            if (width != videoRenderingViewSizeWidth || height != videoRenderingViewSizeHeight) {
+                videoRenderingViewSizeWidth = width;
+                videoRenderingViewSizeHeight = height;
+                videoRenderingViewSizeString = width + "x" + height;
+            }
+            return videoRenderingViewSizeString;
         } else {
             return UNKNOWN_DIMENSION;
         }
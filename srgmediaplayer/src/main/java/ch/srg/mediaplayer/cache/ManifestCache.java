@@ -0,0 +1,292 @@
+package ch.srg.mediaplayer.cache;
+
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Keeps recently fetched DASH manifests and HLS playlists, keyed by URI, so that a player prepared with a prefetched
+ * media skips its first manifest request. Entries of on demand medias are valid for {@link #getVodTtlMs()}. Live
+ * manifests change continuously, their entries are valid for {@link #getLiveTtlMs()} and are served only once, later
+ * manifest refreshes always reach the network.
+ * <p>
+ * Concurrent requests for the same URI share one download. This class is thread safe.
+ */
+public class ManifestCache {
+    private static final String TAG = "ManifestCache";
+    public static final long DEFAULT_VOD_TTL_MS = 5 * 60 * 1000;
+    public static final long DEFAULT_LIVE_TTL_MS = 2000;
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * A downloaded manifest, with the URI it was finally read from.
+     */
+    public static final class Manifest {
+        /**
+         * URI after redirects, relative URIs of the manifest are resolved against it.
+         */
+        @NonNull
+        public final Uri uri;
+        /**
+         * Manifest data, not to be modified.
+         */
+        @NonNull
+        public final byte[] data;
+
+        Manifest(@NonNull Uri uri, @NonNull byte[] data) {
+            this.uri = uri;
+            this.data = data;
+        }
+    }
+
+    private static final class Entry {
+        final Manifest manifest;
+        final long expirationTime;
+        final boolean live;
+
+        Entry(Manifest manifest, long expirationTime, boolean live) {
+            this.manifest = manifest;
+            this.expirationTime = expirationTime;
+            this.live = live;
+        }
+    }
+
+    private final DataSource.Factory dataSourceFactory;
+    private final long vodTtlMs;
+    private final long liveTtlMs;
+    private final int maxEntries;
+    private final LinkedHashMap<Uri, Entry> entries;
+    private final Map<Uri, FutureTask<Manifest>> pendingLoads = new HashMap<>();
+
+    /**
+     * @param dataSourceFactory used to download the manifests
+     * @param vodTtlMs          validity of on demand manifests
+     * @param liveTtlMs         validity of live manifests
+     * @param maxEntries        maximum number of manifests kept, the least recently used are removed first
+     */
+    public ManifestCache(@NonNull DataSource.Factory dataSourceFactory, long vodTtlMs, long liveTtlMs, int maxEntries) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.vodTtlMs = vodTtlMs;
+        this.liveTtlMs = liveTtlMs;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Uri, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Uri, Entry> eldest) {
+                return size() > ManifestCache.this.maxEntries;
+            }
+        };
+    }
+
+    public ManifestCache(@NonNull DataSource.Factory dataSourceFactory) {
+        this(dataSourceFactory, DEFAULT_VOD_TTL_MS, DEFAULT_LIVE_TTL_MS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public long getVodTtlMs() {
+        return vodTtlMs;
+    }
+
+    public long getLiveTtlMs() {
+        return liveTtlMs;
+    }
+
+    /**
+     * Download the manifest in background, if no valid entry or download exists. Errors are ignored, the player
+     * downloads the manifest itself.
+     *
+     * @param uri manifest uri, as given to the player
+     */
+    public void prefetch(@NonNull Uri uri) {
+        FutureTask<Manifest> task;
+        synchronized (this) {
+            if (getValidEntry(uri) != null || pendingLoads.containsKey(uri)) {
+                return;
+            }
+            task = createLoadTask(uri);
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(task);
+    }
+
+    /**
+     * Get a valid manifest, waiting for a pending download, or downloading it on the calling thread.
+     *
+     * @param uri manifest uri
+     * @return manifest
+     * @throws IOException download error
+     */
+    @NonNull
+    public Manifest load(@NonNull Uri uri) throws IOException {
+        FutureTask<Manifest> task;
+        boolean owner = false;
+        synchronized (this) {
+            Entry entry = getValidEntry(uri);
+            if (entry != null) {
+                return entry.manifest;
+            }
+            task = pendingLoads.get(uri);
+            if (task == null) {
+                task = createLoadTask(uri);
+                owner = true;
+            }
+        }
+        if (owner) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Get a valid manifest, waiting for a pending download but without starting one. Live manifests are removed, a
+     * second call returns null.
+     *
+     * @param uri manifest uri
+     * @return manifest, null if none is valid or if the pending download failed
+     */
+    @Nullable
+    public Manifest take(@NonNull Uri uri) throws InterruptedIOException {
+        FutureTask<Manifest> task;
+        synchronized (this) {
+            Entry entry = getValidEntry(uri);
+            if (entry != null) {
+                if (entry.live) {
+                    entries.remove(uri);
+                }
+                return entry.manifest;
+            }
+            task = pendingLoads.get(uri);
+        }
+        if (task == null) {
+            return null;
+        }
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = getValidEntry(uri);
+            if (entry != null && entry.live) {
+                entries.remove(uri);
+            }
+            return entry != null ? entry.manifest : null;
+        }
+    }
+
+    public synchronized void remove(@NonNull Uri uri) {
+        entries.remove(uri);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Remove the expired entries.
+     */
+    public synchronized void trim() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expirationTime <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Nullable
+    private Entry getValidEntry(@NonNull Uri uri) {
+        Entry entry = entries.get(uri);
+        if (entry != null && entry.expirationTime <= SystemClock.elapsedRealtime()) {
+            entries.remove(uri);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Create and register a download, to be run once.
+     */
+    @NonNull
+    private FutureTask<Manifest> createLoadTask(@NonNull Uri uri) {
+        FutureTask<Manifest> task = new FutureTask<>(() -> {
+            try {
+                Manifest manifest = download(uri);
+                boolean live = isLive(manifest.data);
+                synchronized (this) {
+                    entries.put(uri, new Entry(manifest, SystemClock.elapsedRealtime() + (live ? liveTtlMs : vodTtlMs), live));
+                }
+                return manifest;
+            } catch (IOException e) {
+                Log.w(TAG, "Manifest download failed: " + uri, e);
+                throw e;
+            } finally {
+                synchronized (this) {
+                    pendingLoads.remove(uri);
+                }
+            }
+        });
+        pendingLoads.put(uri, task);
+        return task;
+    }
+
+    @NonNull
+    private Manifest download(@NonNull Uri uri) throws IOException {
+        DataSource dataSource = dataSourceFactory.createDataSource();
+        DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, new DataSpec(uri, DataSpec.FLAG_ALLOW_GZIP));
+        try {
+            byte[] data = Util.toByteArray(inputStream);
+            // Only known while the data source is open
+            Uri finalUri = dataSource.getUri();
+            return new Manifest(finalUri != null ? finalUri : uri, data);
+        } finally {
+            Util.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * DASH manifests are live if dynamic, HLS media playlists if they have no end tag. HLS master playlists do not
+     * change during playback.
+     */
+    static boolean isLive(@NonNull byte[] data) {
+        String manifest = new String(data, UTF_8);
+        if (manifest.startsWith("#EXTM3U")) {
+            return !manifest.contains("#EXT-X-STREAM-INF") && !manifest.contains("#EXT-X-ENDLIST");
+        } else {
+            return manifest.contains("type=\"dynamic\"");
+        }
+    }
+}
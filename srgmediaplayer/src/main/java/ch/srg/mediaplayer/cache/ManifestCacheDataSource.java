@@ -0,0 +1,127 @@
+package ch.srg.mediaplayer.cache;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.hls.HlsDataSourceFactory;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Serves whole manifest requests from a {@link ManifestCache}, other requests go to the upstream data source. Cached
+ * reads are not reported to the transfer listeners, they would distort bandwidth estimates.
+ */
+public class ManifestCacheDataSource implements DataSource {
+    public static class Factory implements DataSource.Factory {
+        private final ManifestCache manifestCache;
+        private final DataSource.Factory upstreamFactory;
+
+        public Factory(@NonNull ManifestCache manifestCache, @NonNull DataSource.Factory upstreamFactory) {
+            this.manifestCache = manifestCache;
+            this.upstreamFactory = upstreamFactory;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ManifestCacheDataSource(manifestCache, upstreamFactory.createDataSource());
+        }
+    }
+
+    /**
+     * Serves the playlists of an HLS media from the cache, media chunks, keys and init segments go to the upstream
+     * data source only.
+     */
+    public static class HlsFactory implements HlsDataSourceFactory {
+        private final ManifestCache manifestCache;
+        private final DataSource.Factory upstreamFactory;
+
+        public HlsFactory(@NonNull ManifestCache manifestCache, @NonNull DataSource.Factory upstreamFactory) {
+            this.manifestCache = manifestCache;
+            this.upstreamFactory = upstreamFactory;
+        }
+
+        @Override
+        public DataSource createDataSource(int dataType) {
+            DataSource upstream = upstreamFactory.createDataSource();
+            return dataType == C.DATA_TYPE_MANIFEST ? new ManifestCacheDataSource(manifestCache, upstream) : upstream;
+        }
+    }
+
+    private final ManifestCache manifestCache;
+    private final DataSource upstream;
+    @Nullable
+    private DataSource currentDataSource;
+    @Nullable
+    private Uri cachedUri;
+
+    public ManifestCacheDataSource(@NonNull ManifestCache manifestCache, @NonNull DataSource upstream) {
+        this.manifestCache = manifestCache;
+        this.upstream = upstream;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        ManifestCache.Manifest manifest = null;
+        if (dataSpec.position == 0 && dataSpec.length == C.LENGTH_UNSET && dataSpec.httpMethod == DataSpec.HTTP_METHOD_GET) {
+            manifest = manifestCache.take(dataSpec.uri);
+        }
+        if (manifest != null) {
+            // Final URI of the download, the player resolves the relative URIs of the manifest against it
+            cachedUri = manifest.uri;
+            currentDataSource = new ByteArrayDataSource(manifest.data);
+        } else {
+            cachedUri = null;
+            currentDataSource = upstream;
+        }
+        return currentDataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (currentDataSource == null) {
+            throw new IllegalStateException("Not opened");
+        }
+        return currentDataSource.read(buffer, offset, readLength);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return cachedUri != null ? cachedUri : upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return cachedUri != null ? Collections.emptyMap() : upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (currentDataSource != null) {
+            try {
+                currentDataSource.close();
+            } finally {
+                currentDataSource = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package ch.srg.mediaplayer.segment.artwork;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ch.srg.mediaplayer.SRGMediaPlayerController;
+import ch.srg.mediaplayer.segment.model.Segment;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Loads segment images ({@link Segment#getImageUrl()}) downsampled to a target size. Decoded bitmaps are kept in a
+ * memory LRU cache, shared by the loaders created with the player constructor, downloaded files in a disk cache
+ * shared by all loaders. Prefetching loads the images of the segments closest to the playback position first.
+ */
+public class SegmentArtworkLoader {
+    private static final String TAG = "SegmentArtworkLoader";
+    private static final String DISK_CACHE_DIRECTORY = "srgmediaplayer-segment-artwork";
+    public static final long DEFAULT_DISK_CACHE_SIZE = 20 * 1024 * 1024;
+    private static final int THREAD_COUNT = 2;
+    /**
+     * Priority of explicit loads, before any prefetch.
+     */
+    private static final long LOAD_PRIORITY = -1;
+
+    private static Cache diskCache;
+    private static long diskCacheSize;
+    private static LruCache<String, Bitmap> sharedMemoryCache;
+
+    public interface Callback {
+        /**
+         * Called on the main thread.
+         *
+         * @param segment segment
+         * @param bitmap  downsampled image, null if it could not be loaded
+         */
+        void onArtworkLoaded(@NonNull Segment segment, @Nullable Bitmap bitmap);
+    }
+
+    private final HttpDataSource.Factory httpDataSourceFactory;
+    private final Cache cache;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final boolean sharedMemory;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Requests not completed yet by image url, accessed from the main thread only.
+     */
+    private final Map<String, Request> pendingRequests = new HashMap<>();
+    private long requestCounter;
+    private boolean released;
+
+    /**
+     * @param context               context
+     * @param httpDataSourceFactory HTTP stack used for downloads
+     * @param targetWidth           minimum width of the decoded bitmaps in pixels
+     * @param targetHeight          minimum height of the decoded bitmaps in pixels
+     * @param memoryCacheSize       size in bytes of the memory cache of this loader
+     * @param diskCacheSize         disk cache size in bytes. The disk cache is shared by all the loaders of the
+     *                              process, only the size given by the first loader is used.
+     */
+    public SegmentArtworkLoader(@NonNull Context context, @NonNull HttpDataSource.Factory httpDataSourceFactory,
+                                int targetWidth, int targetHeight, int memoryCacheSize, long diskCacheSize) {
+        this(context, httpDataSourceFactory, targetWidth, targetHeight, createMemoryCache(memoryCacheSize), false, diskCacheSize);
+    }
+
+    /**
+     * Use the HTTP stack of a player, with the memory cache shared by the loaders created with this constructor,
+     * sized to one eighth of the available memory.
+     */
+    public SegmentArtworkLoader(@NonNull Context context, @NonNull SRGMediaPlayerController controller, int targetWidth, int targetHeight) {
+        this(context, controller.getHttpDataSourceFactory(), targetWidth, targetHeight, getSharedMemoryCache(), true,
+                DEFAULT_DISK_CACHE_SIZE);
+    }
+
+    private SegmentArtworkLoader(@NonNull Context context, @NonNull HttpDataSource.Factory httpDataSourceFactory,
+                                 int targetWidth, int targetHeight, @NonNull LruCache<String, Bitmap> memoryCache,
+                                 boolean sharedMemory, long diskCacheSize) {
+        this.httpDataSourceFactory = httpDataSourceFactory;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.cache = getDiskCache(context, diskCacheSize);
+        this.memoryCache = memoryCache;
+        this.sharedMemory = sharedMemory;
+        executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @NonNull
+    private static LruCache<String, Bitmap> createMemoryCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid memory cache size: " + size);
+        }
+        return new LruCache<String, Bitmap>(size) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    @NonNull
+    private static synchronized LruCache<String, Bitmap> getSharedMemoryCache() {
+        if (sharedMemoryCache == null) {
+            sharedMemoryCache = createMemoryCache((int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE));
+        }
+        return sharedMemoryCache;
+    }
+
+    private static synchronized Cache getDiskCache(@NonNull Context context, long size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid disk cache size: " + size);
+        }
+        // A cache directory can only be used by one SimpleCache instance
+        if (diskCache == null) {
+            Context applicationContext = context.getApplicationContext();
+            diskCache = new SimpleCache(new File(applicationContext.getCacheDir(), DISK_CACHE_DIRECTORY),
+                    new LeastRecentlyUsedCacheEvictor(size), new ExoDatabaseProvider(applicationContext));
+            diskCacheSize = size;
+        } else if (size != diskCacheSize) {
+            Log.w(TAG, "Disk cache already created with " + diskCacheSize + " bytes, ignoring " + size);
+        }
+        return diskCache;
+    }
+
+    /**
+     * @return the image of a segment if it is in the memory cache
+     */
+    @Nullable
+    public Bitmap getCachedArtwork(@NonNull Segment segment) {
+        String imageUrl = segment.getImageUrl();
+        return TextUtils.isEmpty(imageUrl) ? null : memoryCache.get(getMemoryCacheKey(imageUrl));
+    }
+
+    /**
+     * Loaders sharing a memory cache may decode the same image with different target sizes.
+     */
+    @NonNull
+    private String getMemoryCacheKey(@NonNull String imageUrl) {
+        return sharedMemory ? targetWidth + "x" + targetHeight + " " + imageUrl : imageUrl;
+    }
+
+    /**
+     * Load the image of a segment before any prefetched image. The callback is called immediately if the image is in
+     * the memory cache.
+     */
+    @MainThread
+    public void load(@NonNull Segment segment, @NonNull Callback callback) {
+        String imageUrl = segment.getImageUrl();
+        if (released || TextUtils.isEmpty(imageUrl)) {
+            callback.onArtworkLoaded(segment, null);
+            return;
+        }
+        Bitmap bitmap = memoryCache.get(getMemoryCacheKey(imageUrl));
+        if (bitmap != null) {
+            callback.onArtworkLoaded(segment, bitmap);
+            return;
+        }
+        Request request = enqueue(segment, imageUrl, LOAD_PRIORITY);
+        request.callbacks.add(callback);
+    }
+
+    /**
+     * Load the images of segments in the background, closest to position first. Previously prefetched images that
+     * are not loaded yet and not part of segments are cancelled.
+     *
+     * @param segments player segments
+     * @param position player position in milliseconds
+     */
+    @MainThread
+    public void prefetch(@NonNull List<Segment> segments, long position) {
+        if (released) {
+            return;
+        }
+        Set<String> imageUrls = new HashSet<>();
+        for (Segment segment : segments) {
+            String imageUrl = segment.getImageUrl();
+            if (!TextUtils.isEmpty(imageUrl) && imageUrls.add(imageUrl) && memoryCache.get(getMemoryCacheKey(imageUrl)) == null) {
+                enqueue(segment, imageUrl, SegmentArtworkUtils.getDistance(segment, position));
+            }
+        }
+        Iterator<Request> iterator = pendingRequests.values().iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            if (request.callbacks.isEmpty() && !imageUrls.contains(request.imageUrl) && executor.remove(request)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Cancel a callback registered with {@link #load(Segment, Callback)}.
+     */
+    @MainThread
+    public void cancel(@NonNull Callback callback) {
+        for (Request request : pendingRequests.values()) {
+            request.callbacks.remove(callback);
+        }
+    }
+
+    /**
+     * Cancel pending loads and clear the memory cache if it is not shared. The disk cache is kept.
+     */
+    @MainThread
+    public void release() {
+        released = true;
+        executor.shutdownNow();
+        pendingRequests.clear();
+        if (!sharedMemory) {
+            memoryCache.evictAll();
+        }
+    }
+
+    @NonNull
+    private Request enqueue(@NonNull Segment segment, @NonNull String imageUrl, long priority) {
+        Request request = pendingRequests.get(imageUrl);
+        if (request == null) {
+            request = new Request(segment, imageUrl, priority, requestCounter++);
+            pendingRequests.put(imageUrl, request);
+            executor.execute(request);
+        } else if (request.priority != priority && (priority == LOAD_PRIORITY || request.priority != LOAD_PRIORITY)
+                && executor.remove(request)) {
+            // Not started yet, queue it again with its new priority
+            request.priority = priority;
+            executor.execute(request);
+        }
+        return request;
+    }
+
+    @MainThread
+    private void onRequestCompleted(@NonNull Request request, @Nullable Bitmap bitmap) {
+        if (released || pendingRequests.get(request.imageUrl) != request) {
+            return;
+        }
+        pendingRequests.remove(request.imageUrl);
+        if (bitmap != null) {
+            memoryCache.put(getMemoryCacheKey(request.imageUrl), bitmap);
+        }
+        for (Callback callback : new ArrayList<>(request.callbacks)) {
+            callback.onArtworkLoaded(request.segment, bitmap);
+        }
+    }
+
+    @WorkerThread
+    @Nullable
+    private Bitmap download(@NonNull String imageUrl) throws IOException {
+        CacheDataSource dataSource = new CacheDataSource(cache, httpDataSourceFactory.createDataSource(),
+                CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+        DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, new DataSpec(Uri.parse(imageUrl)));
+        byte[] data;
+        try {
+            data = Util.toByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return decode(data);
+    }
+
+    @Nullable
+    private Bitmap decode(@NonNull byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = SegmentArtworkUtils.getInSampleSize(options.outWidth, options.outHeight, targetWidth, targetHeight);
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    private final class Request implements Runnable, Comparable<Request> {
+        final Segment segment;
+        final String imageUrl;
+        final long order;
+        /**
+         * Only changed while the request is not queued.
+         */
+        volatile long priority;
+        /**
+         * Accessed from the main thread only.
+         */
+        final List<Callback> callbacks = new ArrayList<>();
+
+        Request(@NonNull Segment segment, @NonNull String imageUrl, long priority, long order) {
+            this.segment = segment;
+            this.imageUrl = imageUrl;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            try {
+                bitmap = download(imageUrl);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to load " + imageUrl, e);
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> onRequestCompleted(this, result));
+        }
+
+        @Override
+        public int compareTo(@NonNull Request o) {
+            int result = Long.compare(priority, o.priority);
+            return result != 0 ? result : Long.compare(order, o.order);
+        }
+    }
+}
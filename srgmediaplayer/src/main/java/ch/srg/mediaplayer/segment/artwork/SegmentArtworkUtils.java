@@ -0,0 +1,46 @@
+package ch.srg.mediaplayer.segment.artwork;
+
+import androidx.annotation.NonNull;
+
+import ch.srg.mediaplayer.segment.model.Segment;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Prefetch priorities and downsampling of {@link SegmentArtworkLoader}.
+ */
+final class SegmentArtworkUtils {
+    private SegmentArtworkUtils() {
+    }
+
+    /**
+     * @return distance in milliseconds between position and the segment, 0 if the segment contains position. Images
+     * with the smallest distance are prefetched first.
+     */
+    static long getDistance(@NonNull Segment segment, long position) {
+        long markIn = segment.getMarkIn().getPosition();
+        long markOut = segment.getMarkOut().getPosition();
+        if (position < markIn) {
+            return markIn - position;
+        } else if (position >= markOut) {
+            return position - markOut;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the largest power of two keeping both dimensions at least as large as the target, 1 without target
+     */
+    static int getInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        if (targetWidth > 0 && targetHeight > 0) {
+            while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+}
@@ -0,0 +1,515 @@
+package ch.srg.mediaplayer.segment.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+
+import java.util.Arrays;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Segment storage for very large segment sets. Marks, durations and flags are stored in parallel primitive arrays and
+ * {@link Segment} objects are only created when returned by a lookup or by {@link #get(int)}. Titles, descriptions
+ * and image urls are loaded at that time through a {@link MetadataLoader}.
+ * <p>
+ * Entries are append only. Lookups follow the {@link SegmentList} semantics: first matching segment in insertion
+ * order.
+ */
+public class CompactSegmentList implements SegmentLookup {
+    public static final int FLAG_DISPLAYABLE = 1;
+    public static final int FLAG_LIVE = 1 << 1;
+    public static final int FLAG_360 = 1 << 2;
+    /**
+     * Mark in and mark out are dates in milliseconds since epoch instead of player positions.
+     */
+    public static final int FLAG_DATE = 1 << 3;
+    /**
+     * Set from the blocking reason.
+     */
+    private static final int FLAG_BLOCKED = 1 << 16;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    public interface MetadataLoader {
+        /**
+         * Load the metadata strings of a segment, called once per entry when its segment object is first created in
+         * this list or in one of its {@link #toPlayerPositions(MediaPlayerTimeLine)} copies.
+         *
+         * @param index      entry index as returned by {@link #add(String, long, long, long, int, String)}
+         * @param identifier segment identifier
+         * @return metadata
+         */
+        @NonNull
+        Metadata loadMetadata(int index, @Nullable String identifier);
+    }
+
+    public static class Metadata {
+        public static final Metadata EMPTY = new Metadata(null, null, null);
+
+        @Nullable
+        public final String title;
+        @Nullable
+        public final String description;
+        @Nullable
+        public final String imageUrl;
+
+        public Metadata(@Nullable String title, @Nullable String description, @Nullable String imageUrl) {
+            this.title = title;
+            this.description = description;
+            this.imageUrl = imageUrl;
+        }
+    }
+
+    /**
+     * Metadata loaded by a list and the copies made by {@link #toPlayerPositions(MediaPlayerTimeLine)}, by entry index.
+     */
+    private static final class MetadataCache {
+        @Nullable
+        private final MetadataLoader metadataLoader;
+        private Metadata[] entries = new Metadata[0];
+
+        MetadataCache(@Nullable MetadataLoader metadataLoader) {
+            this.metadataLoader = metadataLoader;
+        }
+
+        @NonNull
+        Metadata get(int index, @Nullable String identifier) {
+            if (metadataLoader == null) {
+                return Metadata.EMPTY;
+            }
+            if (index >= entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(index + 1, entries.length + (entries.length >> 1)));
+            }
+            Metadata metadata = entries[index];
+            if (metadata == null) {
+                metadata = metadataLoader.loadMetadata(index, identifier);
+                entries[index] = metadata;
+            }
+            return metadata;
+        }
+    }
+
+    private final MetadataCache metadataCache;
+    private int size;
+    private String[] identifiers;
+    private String[] blockingReasons;
+    private long[] markIns;
+    private long[] markOuts;
+    private long[] durations;
+    private int[] flags;
+    private int dateCount;
+    /**
+     * Segments already created, by entry index.
+     */
+    @Nullable
+    private Segment[] segments;
+
+    /**
+     * Indexes of position entries sorted by mark in, then by index.
+     */
+    private int[] sortedIndexes;
+    /**
+     * Mark outs of the entries in sortedIndexes order.
+     */
+    private final MarkOutTree markOutTree = new MarkOutTree(0);
+    private int sortedSize;
+    private boolean positionIndexValid = true;
+
+    /**
+     * Open addressing table of identifiers, storing entry index + 1, built on first use.
+     */
+    @Nullable
+    private int[] identifierTable;
+
+    public CompactSegmentList(int initialCapacity, @Nullable MetadataLoader metadataLoader) {
+        this.metadataCache = new MetadataCache(metadataLoader);
+        allocate(Math.max(initialCapacity, 1));
+    }
+
+    public CompactSegmentList(@Nullable MetadataLoader metadataLoader) {
+        this(DEFAULT_CAPACITY, metadataLoader);
+    }
+
+    /**
+     * Copy of source with date entries converted to player positions.
+     */
+    private CompactSegmentList(@NonNull CompactSegmentList source, @NonNull MediaPlayerTimeLine timeLine) {
+        // Entries keep their index, metadata already loaded for the source is not loaded again
+        this.metadataCache = source.metadataCache;
+        allocate(Math.max(source.size, 1));
+        size = source.size;
+        System.arraycopy(source.identifiers, 0, identifiers, 0, size);
+        System.arraycopy(source.blockingReasons, 0, blockingReasons, 0, size);
+        System.arraycopy(source.durations, 0, durations, 0, size);
+        for (int i = 0; i < size; i++) {
+            int flags = source.flags[i];
+            if ((flags & FLAG_DATE) != 0) {
+                markIns[i] = timeLine.getPosition(source.markIns[i]);
+                markOuts[i] = timeLine.getPosition(source.markOuts[i]);
+                flags &= ~FLAG_DATE;
+            } else {
+                markIns[i] = source.markIns[i];
+                markOuts[i] = source.markOuts[i];
+            }
+            this.flags[i] = flags;
+        }
+        positionIndexValid = false;
+    }
+
+    private void allocate(int capacity) {
+        identifiers = new String[capacity];
+        blockingReasons = new String[capacity];
+        markIns = new long[capacity];
+        markOuts = new long[capacity];
+        durations = new long[capacity];
+        flags = new int[capacity];
+        sortedIndexes = new int[capacity];
+    }
+
+    /**
+     * Append a segment.
+     *
+     * @param identifier     segment identifier
+     * @param markIn         position or date (with {@link #FLAG_DATE}) in milliseconds
+     * @param markOut        position or date (with {@link #FLAG_DATE}) in milliseconds
+     * @param duration       duration in milliseconds
+     * @param flags          combination of {@link #FLAG_DISPLAYABLE}, {@link #FLAG_LIVE}, {@link #FLAG_360} and {@link #FLAG_DATE}
+     * @param blockingReason blocking reason, null or empty if not blocked
+     * @return entry index
+     */
+    public int add(@Nullable String identifier, long markIn, long markOut, long duration, int flags, @Nullable String blockingReason) {
+        if (size == identifiers.length) {
+            grow();
+        }
+        int index = size++;
+        flags &= ~FLAG_BLOCKED;
+        if (blockingReason != null && !blockingReason.isEmpty()) {
+            flags |= FLAG_BLOCKED;
+        }
+        identifiers[index] = identifier;
+        blockingReasons[index] = blockingReason;
+        markIns[index] = markIn;
+        markOuts[index] = markOut;
+        durations[index] = duration;
+        this.flags[index] = flags;
+        if ((flags & FLAG_DATE) != 0) {
+            dateCount++;
+        } else if (positionIndexValid) {
+            if (sortedSize == 0 || markIns[sortedIndexes[sortedSize - 1]] <= markIn) {
+                // Usual case, segments come sorted
+                sortedIndexes[sortedSize] = index;
+                markOutTree.set(sortedSize, markOut);
+                sortedSize++;
+            } else {
+                positionIndexValid = false;
+            }
+        }
+        if (identifierTable != null) {
+            if (size * 2 > identifierTable.length) {
+                identifierTable = null;
+            } else {
+                insertIdentifier(identifierTable, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Append a segment.
+     */
+    public int add(@NonNull Segment segment) {
+        Mark markIn = segment.getMarkIn();
+        Mark markOut = segment.getMarkOut();
+        int flags = (segment.isDisplayable() ? FLAG_DISPLAYABLE : 0)
+                | (segment.isLive() ? FLAG_LIVE : 0)
+                | (segment.is360() ? FLAG_360 : 0);
+        if (markIn.hasDate() && markOut.hasDate()) {
+            return add(segment.getIdentifier(), markIn.getTime(), markOut.getTime(), segment.getDuration(),
+                    flags | FLAG_DATE, segment.getBlockingReason());
+        } else {
+            return add(segment.getIdentifier(), markIn.getPosition(), markOut.getPosition(), segment.getDuration(),
+                    flags, segment.getBlockingReason());
+        }
+    }
+
+    private void grow() {
+        int capacity = identifiers.length + (identifiers.length >> 1) + 1;
+        identifiers = Arrays.copyOf(identifiers, capacity);
+        blockingReasons = Arrays.copyOf(blockingReasons, capacity);
+        markIns = Arrays.copyOf(markIns, capacity);
+        markOuts = Arrays.copyOf(markOuts, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        sortedIndexes = Arrays.copyOf(sortedIndexes, capacity);
+        if (segments != null) {
+            segments = Arrays.copyOf(segments, capacity);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Nullable
+    public String getIdentifier(int index) {
+        checkIndex(index);
+        return identifiers[index];
+    }
+
+    public long getMarkIn(int index) {
+        checkIndex(index);
+        return markIns[index];
+    }
+
+    public long getMarkOut(int index) {
+        checkIndex(index);
+        return markOuts[index];
+    }
+
+    public long getDuration(int index) {
+        checkIndex(index);
+        return durations[index];
+    }
+
+    @Nullable
+    public String getBlockingReason(int index) {
+        checkIndex(index);
+        return blockingReasons[index];
+    }
+
+    public int getFlags(int index) {
+        checkIndex(index);
+        return flags[index] & ~FLAG_BLOCKED;
+    }
+
+    public boolean isBlocked(int index) {
+        checkIndex(index);
+        return (flags[index] & FLAG_BLOCKED) != 0;
+    }
+
+    /**
+     * @return the segment of an entry, created and cached on first access
+     */
+    @NonNull
+    public Segment get(int index) {
+        checkIndex(index);
+        if (segments == null) {
+            segments = new Segment[identifiers.length];
+        }
+        Segment segment = segments[index];
+        if (segment == null) {
+            Metadata metadata = metadataCache.get(index, identifiers[index]);
+            int flags = this.flags[index];
+            MarkRange markRange = (flags & FLAG_DATE) != 0
+                    ? MarkRange.fromTimes(markIns[index], markOuts[index])
+                    : new MarkRange(markIns[index], markOuts[index]);
+            segment = new Segment(identifiers[index], metadata.title, metadata.description, metadata.imageUrl,
+                    blockingReasons[index], markRange, durations[index],
+                    (flags & FLAG_DISPLAYABLE) != 0, (flags & FLAG_LIVE) != 0, (flags & FLAG_360) != 0);
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    /**
+     * @return a copy where date entries are converted to player positions, this list if it has no date entry
+     */
+    @NonNull
+    public CompactSegmentList toPlayerPositions(@NonNull MediaPlayerTimeLine timeLine) {
+        return dateCount == 0 ? this : new CompactSegmentList(this, timeLine);
+    }
+
+    /**
+     * Create all segments. Defeats the purpose of this class for large lists, to be used for display only.
+     */
+    @NonNull
+    public SegmentList toSegmentList() {
+        SegmentList segmentList = new SegmentList(size);
+        for (int i = 0; i < size; i++) {
+            segmentList.add(get(i));
+        }
+        return segmentList;
+    }
+
+    @Nullable
+    @Override
+    public Segment findSegmentAtPosition(long position) {
+        int index = find(position, false);
+        return index >= 0 ? get(index) : null;
+    }
+
+    @Nullable
+    @Override
+    public Segment findBlockedSegmentAtPosition(long position) {
+        int index = find(position, true);
+        return index >= 0 ? get(index) : null;
+    }
+
+    @Nullable
+    @Override
+    public Segment findSegmentById(@NonNull String id) {
+        if (identifierTable == null) {
+            identifierTable = buildIdentifierTable();
+        }
+        int mask = identifierTable.length - 1;
+        for (int slot = spread(id.hashCode()) & mask; identifierTable[slot] != 0; slot = (slot + 1) & mask) {
+            int index = identifierTable[slot] - 1;
+            if (id.equals(identifiers[index])) {
+                return get(index);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long findNextBoundary(long position) {
+        ensurePositionIndex();
+        int next = upperBound(position);
+        long result = next < sortedSize ? markIns[sortedIndexes[next]] : Long.MAX_VALUE;
+        for (int i = markOutTree.next(0, next, position); i >= 0; i = markOutTree.next(i + 1, next, position)) {
+            result = Math.min(result, markOuts[sortedIndexes[i]]);
+        }
+        return result == Long.MAX_VALUE ? C.TIME_UNSET : result;
+    }
+
+    @Nullable
+    @Override
+    public Segment findNextBlockedSegment(long position) {
+        ensurePositionIndex();
+        int result = -1;
+        for (int i = upperBound(position); i < sortedSize; i++) {
+            int index = sortedIndexes[i];
+            if (result != -1 && markIns[index] > markIns[result]) {
+                break;
+            }
+            if ((flags[index] & FLAG_BLOCKED) != 0 && markOuts[index] > markIns[index]) {
+                // Indexes with the same mark in are sorted, the first one found is the first in insertion order
+                result = index;
+                break;
+            }
+        }
+        return result >= 0 ? get(result) : null;
+    }
+
+    /**
+     * @return index of the first entry (in insertion order) containing position, -1 if none
+     */
+    private int find(long position, boolean blockedOnly) {
+        ensurePositionIndex();
+        int result = Integer.MAX_VALUE;
+        int end = upperBound(position);
+        for (int i = markOutTree.next(0, end, position); i >= 0; i = markOutTree.next(i + 1, end, position)) {
+            int index = sortedIndexes[i];
+            if (index < result && (!blockedOnly || (flags[index] & FLAG_BLOCKED) != 0)) {
+                result = index;
+            }
+        }
+        return result != Integer.MAX_VALUE ? result : -1;
+    }
+
+    /**
+     * @return index in sortedIndexes of the first entry whose mark in is strictly greater than position
+     */
+    private int upperBound(long position) {
+        int low = 0;
+        int high = sortedSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (markIns[sortedIndexes[mid]] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensurePositionIndex() {
+        if (positionIndexValid) {
+            return;
+        }
+        sortedSize = 0;
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & FLAG_DATE) == 0) {
+                sortedIndexes[sortedSize++] = i;
+            }
+        }
+        mergeSort(sortedIndexes, new int[sortedSize], 0, sortedSize);
+        markOutTree.clear(sortedSize);
+        for (int i = 0; i < sortedSize; i++) {
+            markOutTree.setLeaf(i, markOuts[sortedIndexes[i]]);
+        }
+        markOutTree.build();
+        positionIndexValid = true;
+    }
+
+    /**
+     * Stable sort of entry indexes by mark in, indexes being initially in insertion order.
+     */
+    private void mergeSort(int[] indexes, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(indexes, buffer, from, middle);
+        mergeSort(indexes, buffer, middle, to);
+        if (markIns[indexes[middle - 1]] <= markIns[indexes[middle]]) {
+            return;
+        }
+        System.arraycopy(indexes, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && markIns[buffer[left]] <= markIns[buffer[right]])) {
+                indexes[i] = buffer[left++];
+            } else {
+                indexes[i] = buffer[right++];
+            }
+        }
+    }
+
+    @NonNull
+    private int[] buildIdentifierTable() {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) * 4 - 1);
+        int[] table = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            insertIdentifier(table, i);
+        }
+        return table;
+    }
+
+    private void insertIdentifier(@NonNull int[] table, int index) {
+        String identifier = identifiers[index];
+        if (identifier == null) {
+            return;
+        }
+        int mask = table.length - 1;
+        int slot = spread(identifier.hashCode()) & mask;
+        while (table[slot] != 0) {
+            if (identifier.equals(identifiers[table[slot] - 1])) {
+                // Keep the first segment with this identifier
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
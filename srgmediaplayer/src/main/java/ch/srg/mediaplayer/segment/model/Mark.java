@@ -9,32 +9,63 @@ import java.util.Date;
  * Copyright (c) SRG SSR. All rights reserved.
  * <p>
  * License information is available from the LICENSE file.
+ * <p>
+ * Immutable player position or date. Dates are stored as milliseconds since epoch, use {@link #hasDate()} and
+ * {@link #getTime()} instead of {@link #getDate()} which allocates a new {@link Date}.
  */
 public class Mark implements Comparable<Mark> {
-    private long position;
-    @Nullable
-    private Date date;
+    private final long position;
+    private final long time;
+    private final boolean hasDate;
 
-    public Mark(long position, @Nullable Date date) {
+    private Mark(long position, long time, boolean hasDate) {
         this.position = position;
-        this.date = date;
+        this.time = time;
+        this.hasDate = hasDate;
+    }
+
+    public Mark(long position, @Nullable Date date) {
+        this(position, date != null ? date.getTime() : 0, date != null);
     }
 
     public Mark(long position) {
-        this(position, null);
+        this(position, 0, false);
     }
 
     public Mark(@NonNull Date date) {
-        this(0, date);
+        this(0, date.getTime(), true);
+    }
+
+    /**
+     * @param time date in milliseconds since epoch
+     * @return a date mark
+     */
+    @NonNull
+    public static Mark fromTime(long time) {
+        return new Mark(0, time, true);
     }
 
     public long getPosition() {
         return position;
     }
 
+    public boolean hasDate() {
+        return hasDate;
+    }
+
+    /**
+     * @return date in milliseconds since epoch, only meaningful if {@link #hasDate()}
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return a new Date instance, null if this mark has no date
+     */
     @Nullable
     public Date getDate() {
-        return date;
+        return hasDate ? new Date(time) : null;
     }
 
     @Override
@@ -45,13 +76,14 @@ public class Mark implements Comparable<Mark> {
         Mark mark = (Mark) o;
 
         if (position != mark.position) return false;
-        return date != null ? date.equals(mark.date) : mark.date == null;
+        if (hasDate != mark.hasDate) return false;
+        return !hasDate || time == mark.time;
     }
 
     @Override
     public int hashCode() {
         int result = (int) (position ^ (position >>> 32));
-        result = 31 * result + (date != null ? date.hashCode() : 0);
+        result = 31 * result + (hasDate ? (int) (time ^ (time >>> 32)) : 0);
         return result;
     }
 
@@ -59,12 +91,12 @@ public class Mark implements Comparable<Mark> {
     public String toString() {
         return "Mark{" +
                 "position=" + position +
-                ", date=" + date +
+                ", date=" + getDate() +
                 '}';
     }
 
     @Override
     public int compareTo(@NonNull Mark another) {
-        return (date != null && another.getDate() != null) ? date.compareTo(another.getDate()) : (int) (position - another.position);
+        return (hasDate && another.hasDate) ? Long.compare(time, another.time) : Long.compare(position, another.position);
     }
 }
@@ -0,0 +1,116 @@
+package ch.srg.mediaplayer.segment.model;
+
+import java.util.Arrays;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Segment tree of the mark outs of segments sorted by mark in, each node storing the greatest mark out of its range.
+ * The segments containing a position are the ones before the upper bound of the position with a mark out greater than
+ * the position, {@link #next(int, int, long)} enumerates them in logarithmic time each, whatever the number of
+ * segments covering them.
+ */
+final class MarkOutTree {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * Nodes, root at 1, leaves from capacity.
+     */
+    private long[] nodes;
+    private int capacity;
+
+    MarkOutTree(int size) {
+        capacity = leafCapacity(size);
+        nodes = new long[2 * capacity];
+        Arrays.fill(nodes, EMPTY);
+    }
+
+    /**
+     * Remove all values and make room for size leaves.
+     */
+    void clear(int size) {
+        int newCapacity = leafCapacity(size);
+        if (newCapacity != capacity) {
+            capacity = newCapacity;
+            nodes = new long[2 * capacity];
+        }
+        Arrays.fill(nodes, EMPTY);
+    }
+
+    /**
+     * Set a leaf without updating its parents, {@link #build()} must be called afterwards.
+     */
+    void setLeaf(int index, long markOut) {
+        ensureCapacity(index + 1);
+        nodes[capacity + index] = markOut;
+    }
+
+    void removeLeaf(int index) {
+        if (index < capacity) {
+            nodes[capacity + index] = EMPTY;
+        }
+    }
+
+    /**
+     * Set a leaf and update its parents.
+     */
+    void set(int index, long markOut) {
+        setLeaf(index, markOut);
+        for (int node = (capacity + index) >>> 1; node > 0; node >>>= 1) {
+            nodes[node] = Math.max(nodes[2 * node], nodes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Update all parents after {@link #setLeaf(int, long)} calls.
+     */
+    void build() {
+        for (int node = capacity - 1; node > 0; node--) {
+            nodes[node] = Math.max(nodes[2 * node], nodes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * @param from     first leaf index
+     * @param to       leaf index after the last one
+     * @param position player position
+     * @return the first leaf index in [from, to) whose mark out is strictly greater than position, -1 if none
+     */
+    int next(int from, int to, long position) {
+        if (from >= to || nodes[1] <= position) {
+            return -1;
+        }
+        return next(1, 0, capacity, from, Math.min(to, capacity), position);
+    }
+
+    private int next(int node, int low, int high, int from, int to, long position) {
+        if (high <= from || low >= to || nodes[node] <= position) {
+            return -1;
+        }
+        if (high - low == 1) {
+            return low;
+        }
+        int middle = (low + high) >>> 1;
+        int result = next(2 * node, low, middle, from, to, position);
+        return result >= 0 ? result : next(2 * node + 1, middle, high, from, to, position);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= capacity) {
+            return;
+        }
+        int newCapacity = leafCapacity(size);
+        long[] newNodes = new long[2 * newCapacity];
+        Arrays.fill(newNodes, EMPTY);
+        System.arraycopy(nodes, capacity, newNodes, newCapacity, capacity);
+        nodes = newNodes;
+        capacity = newCapacity;
+        build();
+    }
+
+    private static int leafCapacity(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+}
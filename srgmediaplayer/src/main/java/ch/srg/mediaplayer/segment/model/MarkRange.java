@@ -10,8 +10,8 @@ import java.util.Date;
  * License information is available from the LICENSE file.
  */
 public class MarkRange implements Comparable<MarkRange> {
-    private Mark markIn;
-    private Mark markOut;
+    private final Mark markIn;
+    private final Mark markOut;
 
     public MarkRange(Mark markIn, Mark markOut) {
         this.markIn = markIn;
@@ -26,6 +26,16 @@ public class MarkRange implements Comparable<MarkRange> {
         this(new Mark(markIn), new Mark(markOut));
     }
 
+    /**
+     * @param timeIn  mark in date in milliseconds since epoch
+     * @param timeOut mark out date in milliseconds since epoch
+     * @return a date range
+     */
+    @NonNull
+    public static MarkRange fromTimes(long timeIn, long timeOut) {
+        return new MarkRange(Mark.fromTime(timeIn), Mark.fromTime(timeOut));
+    }
+
     public Mark getMarkIn() {
         return markIn;
     }
@@ -17,6 +17,10 @@ public class MediaPlayerTimeLine {
      * Offset in ms between live and stream position
      */
     private long liveTimeOffsetMs;
+    /**
+     * Live edge duration given with the last update
+     */
+    private long liveEdgeDurationMs;
 
     public MediaPlayerTimeLine(long startTimeMs, long durationMs, boolean dynamicWindow, long liveTimeOffsetMs) {
         this.liveTimeOffsetMs = liveTimeOffsetMs;
@@ -37,6 +41,7 @@ public class MediaPlayerTimeLine {
         this.dynamicWindow = source.dynamicWindow;
         this.durationMs = source.durationMs;
         this.isSeekable = source.isSeekable;
+        this.liveEdgeDurationMs = source.liveEdgeDurationMs;
     }
 
     /**
@@ -66,6 +71,7 @@ public class MediaPlayerTimeLine {
             changed = true;
         }
         this.isSeekable = durationMs != C.TIME_UNSET && !(durationMs <= LIVE_EDGE_DURATION && dynamicWindow);
+        this.liveEdgeDurationMs = liveEdgeDuration;
         return changed;
     }
 
@@ -105,6 +111,10 @@ public class MediaPlayerTimeLine {
         return dynamicWindow;
     }
 
+    public long getLiveEdgeDurationMs() {
+        return liveEdgeDurationMs;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -134,6 +144,7 @@ public class MediaPlayerTimeLine {
         sb.append(", durationMs=").append(durationMs);
         sb.append(", dynamicWindow=").append(dynamicWindow);
         sb.append(", isSeekable=").append(isSeekable);
+        sb.append(", liveEdgeDurationMs=").append(liveEdgeDurationMs);
         sb.append('}');
         return sb.toString();
     }
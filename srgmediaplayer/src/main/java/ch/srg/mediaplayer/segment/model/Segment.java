@@ -1,12 +1,8 @@
 package ch.srg.mediaplayer.segment.model;
 
-import android.text.TextUtils;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.Date;
-
 /**
  * Copyright (c) SRG SSR. All rights reserved.
  * <p>
@@ -43,7 +39,7 @@ public class Segment implements Comparable<Segment> {
                    long markIn, long markOut, long duration,
                    boolean displayable, boolean isLive, boolean is360, long referenceDate) {
         this(identifier, title, description, imageUrl, blockingReason,
-                new MarkRange(new Date(referenceDate + markIn), new Date(referenceDate + markOut)), duration,
+                MarkRange.fromTimes(referenceDate + markIn, referenceDate + markOut), duration,
                 displayable, isLive, is360);
     }
 
@@ -61,7 +57,7 @@ public class Segment implements Comparable<Segment> {
         if (segment1 == null || segment2 == null) {
             return segment1 == segment2;
         }
-        return TextUtils.equals(segment1.identifier, segment2.identifier);
+        return segment1.identifier == null ? segment2.identifier == null : segment1.identifier.equals(segment2.identifier);
     }
 
     public String getTitle() {
@@ -97,7 +93,7 @@ public class Segment implements Comparable<Segment> {
     }
 
     public boolean isBlocked() {
-        return !TextUtils.isEmpty(blockingReason);
+        return blockingReason != null && !blockingReason.isEmpty();
     }
 
     public String getIdentifier() {
@@ -116,6 +112,21 @@ public class Segment implements Comparable<Segment> {
         return is360;
     }
 
+    /**
+     * @return this segment with player positions instead of dates, this if it has no dates
+     */
+    @NonNull
+    public Segment toPlayerPositions(@NonNull MediaPlayerTimeLine timeLine) {
+        if (getMarkIn().hasDate() && getMarkOut().hasDate()) {
+            long markIn = timeLine.getPosition(getMarkIn().getTime());
+            long markOut = timeLine.getPosition(getMarkOut().getTime());
+            return new Segment(identifier, title, description, imageUrl, blockingReason, markIn, markOut, duration,
+                    displayable, isLive, is360);
+        } else {
+            return this;
+        }
+    }
+
     @Override
     public int compareTo(@NonNull Segment another) {
         return markRange.compareTo(another.markRange);
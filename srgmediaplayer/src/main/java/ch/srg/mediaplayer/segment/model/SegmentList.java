@@ -1,19 +1,40 @@
 package ch.srg.mediaplayer.segment.model;
 
-import android.text.TextUtils;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.android.exoplayer2.C;
+
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Copyright (c) SRG SSR. All rights reserved.
  * <p>
  * License information is available from the LICENSE file.
+ * <p>
+ * Position lookups are answered by a {@link SegmentPositionIndex} and identifier lookups by a map of the index of the
+ * first segment with each identifier. Appending, removing and replacing a single segment update the indexes in place when possible,
+ * any other modification makes them rebuild on the next lookup.
  */
-public class SegmentList extends ArrayList<Segment> {
+public class SegmentList extends ArrayList<Segment> implements SegmentLookup {
+    private static final long serialVersionUID = 1L;
+
+    private SegmentPositionIndex positionIndex = new SegmentPositionIndex();
+    /**
+     * Value of {@link #modCount} the position index has been built for.
+     */
+    private int indexedModCount = -1;
+    private HashMap<String, Integer> identifierIndex = new HashMap<>();
+    /**
+     * Value of {@link #modCount} the identifier index has been built for.
+     */
+    private int identifierIndexedModCount = -1;
 
     public SegmentList(int initialCapacity) {
         super(initialCapacity);
@@ -30,13 +51,9 @@ public class SegmentList extends ArrayList<Segment> {
      * Get the first Block segment at position
      */
     @Nullable
+    @Override
     public Segment findBlockedSegmentAtPosition(long position) {
-        for (Segment segment : this) {
-            if (segment.isBlocked() && segment.getMarkRange().isInRange(position)) {
-                return segment;
-            }
-        }
-        return null;
+        return getPositionIndex().find(position, true);
     }
 
     /**
@@ -46,24 +63,251 @@ public class SegmentList extends ArrayList<Segment> {
      * @return
      */
     @Nullable
-    public Segment findSegmentAtPosition(@NonNull long position) {
-        for (Segment segment : this) {
-            if (segment.getMarkRange().isInRange(position)) {
-                return segment;
-            }
-        }
-        return null;
+    @Override
+    public Segment findSegmentAtPosition(long position) {
+        return getPositionIndex().find(position, false);
+    }
+
+    /**
+     * Get the next position after which {@link #findSegmentAtPosition(long)} or
+     * {@link #findBlockedSegmentAtPosition(long)} may return a different segment.
+     *
+     * @param position player position
+     * @return the first mark in or mark out strictly after position, {@link C#TIME_UNSET} if none
+     */
+    @Override
+    public long findNextBoundary(long position) {
+        long boundary = getPositionIndex().findNextBoundary(position);
+        return boundary == Long.MAX_VALUE ? C.TIME_UNSET : boundary;
+    }
+
+    /**
+     * Get the next blocked segment starting after position
+     *
+     * @param position player position
+     * @return the blocked segment with the first mark in strictly after position, null if none
+     */
+    @Nullable
+    @Override
+    public Segment findNextBlockedSegment(long position) {
+        return getPositionIndex().findNextBlocked(position);
     }
 
     @Nullable
+    @Override
     public Segment findSegmentById(@NonNull String id) {
-        for (Segment segment : this) {
-            if (TextUtils.equals(id, segment.getIdentifier())) {
-                return segment;
+        int index = indexOfIdentifier(id);
+        return index >= 0 ? get(index) : null;
+    }
+
+    /**
+     * @param id segment identifier
+     * @return index of the first segment with this identifier, -1 if none
+     */
+    public int indexOfIdentifier(@NonNull String id) {
+        Integer index = getIdentifierIndex().get(id);
+        return index != null ? index : -1;
+    }
+
+    @Override
+    public boolean add(Segment segment) {
+        boolean indexed = isIndexed();
+        boolean identifierIndexed = isIdentifierIndexed();
+        super.add(segment);
+        if (indexed) {
+            positionIndex.append(segment);
+            indexedModCount = modCount;
+        }
+        if (identifierIndexed) {
+            String identifier = segment.getIdentifier();
+            if (identifier != null && !identifierIndex.containsKey(identifier)) {
+                identifierIndex.put(identifier, size() - 1);
+            }
+            identifierIndexedModCount = modCount;
+        }
+        return true;
+    }
+
+    @Override
+    public void add(int index, Segment segment) {
+        if (index == size()) {
+            add(segment);
+        } else {
+            super.add(index, segment);
+        }
+    }
+
+    @Override
+    public Segment remove(int index) {
+        boolean indexed = isIndexed();
+        boolean identifierIndexed = isIdentifierIndexed();
+        Segment segment = super.remove(index);
+        if (indexed && positionIndex.remove(segment)) {
+            indexedModCount = modCount;
+        }
+        if (identifierIndexed && index == size()) {
+            // Removing the last segment does not move the others
+            if (isFirstWithIdentifier(segment, index)) {
+                identifierIndex.remove(segment.getIdentifier());
             }
+            identifierIndexedModCount = modCount;
         }
-        return null;
+        return segment;
     }
 
+    @Override
+    public boolean remove(@Nullable Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
 
+    @Override
+    public Segment set(int index, Segment segment) {
+        boolean indexed = isIndexed();
+        boolean identifierIndexed = isIdentifierIndexed();
+        Segment previous = super.set(index, segment);
+        // set does not change modCount
+        if (!indexed || !positionIndex.replace(previous, segment)) {
+            indexedModCount = -1;
+        }
+        String identifier = segment.getIdentifier();
+        if (!identifierIndexed || (isFirstWithIdentifier(previous, index) && !(identifier == null ? previous.getIdentifier() == null : identifier.equals(previous.getIdentifier())))) {
+            // The first segment with the previous identifier may be somewhere else in the list
+            identifierIndexedModCount = -1;
+        } else if (identifier != null) {
+            Integer firstIndex = identifierIndex.get(identifier);
+            if (firstIndex == null || firstIndex > index) {
+                identifierIndex.put(identifier, index);
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Sub lists of ArrayList replace elements without calling {@link #set(int, Segment)}, sub lists of a view of this
+     * list are used instead so that every modification goes through this list and its indexes.
+     */
+    @NonNull
+    @Override
+    public List<Segment> subList(int fromIndex, int toIndex) {
+        return new View().subList(fromIndex, toIndex);
+    }
+
+    @NonNull
+    @Override
+    public Object clone() {
+        SegmentList clone = (SegmentList) super.clone();
+        clone.positionIndex = new SegmentPositionIndex();
+        clone.indexedModCount = -1;
+        clone.identifierIndex = new HashMap<>();
+        clone.identifierIndexedModCount = -1;
+        return clone;
+    }
+
+    private boolean isIndexed() {
+        return indexedModCount == modCount;
+    }
+
+    private boolean isIdentifierIndexed() {
+        return identifierIndexedModCount == modCount;
+    }
+
+    /**
+     * @return true if the segment at index is the one indexed for its identifier
+     */
+    private boolean isFirstWithIdentifier(@NonNull Segment segment, int index) {
+        String identifier = segment.getIdentifier();
+        if (identifier == null) {
+            return false;
+        }
+        Integer firstIndex = identifierIndex.get(identifier);
+        return firstIndex != null && firstIndex == index;
+    }
+
+    @NonNull
+    private HashMap<String, Integer> getIdentifierIndex() {
+        if (!isIdentifierIndexed()) {
+            identifierIndex.clear();
+            for (int i = 0; i < size(); i++) {
+                Segment segment = get(i);
+                String identifier = segment.getIdentifier();
+                if (identifier != null && !identifierIndex.containsKey(identifier)) {
+                    identifierIndex.put(identifier, i);
+                }
+            }
+            identifierIndexedModCount = modCount;
+        }
+        return identifierIndex;
+    }
+
+    @NonNull
+    private SegmentPositionIndex getPositionIndex() {
+        if (!isIndexed()) {
+            positionIndex.rebuild(this);
+            indexedModCount = modCount;
+        }
+        return positionIndex;
+    }
+
+    /**
+     * Fails fast like ArrayList sub lists when this list is structurally modified other than through the view.
+     */
+    private class View extends AbstractList<Segment> implements RandomAccess {
+        private int expectedModCount = SegmentList.this.modCount;
+
+        @Override
+        public Segment get(int index) {
+            checkForComodification();
+            return SegmentList.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            checkForComodification();
+            return SegmentList.this.size();
+        }
+
+        @Override
+        public Segment set(int index, Segment segment) {
+            checkForComodification();
+            return SegmentList.this.set(index, segment);
+        }
+
+        @Override
+        public void add(int index, Segment segment) {
+            checkForComodification();
+            SegmentList.this.add(index, segment);
+            onModified();
+        }
+
+        @Override
+        public Segment remove(int index) {
+            checkForComodification();
+            Segment segment = SegmentList.this.remove(index);
+            onModified();
+            return segment;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            checkForComodification();
+            SegmentList.this.removeRange(fromIndex, toIndex);
+            onModified();
+        }
+
+        private void onModified() {
+            expectedModCount = SegmentList.this.modCount;
+            modCount++;
+        }
+
+        private void checkForComodification() {
+            if (SegmentList.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
 }
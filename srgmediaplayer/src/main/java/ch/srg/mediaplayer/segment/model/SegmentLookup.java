@@ -0,0 +1,40 @@
+package ch.srg.mediaplayer.segment.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Segment queries used by the player during playback.
+ */
+public interface SegmentLookup {
+    /**
+     * Get the first segment at position
+     */
+    @Nullable
+    Segment findSegmentAtPosition(long position);
+
+    /**
+     * Get the first Block segment at position
+     */
+    @Nullable
+    Segment findBlockedSegmentAtPosition(long position);
+
+    @Nullable
+    Segment findSegmentById(@NonNull String id);
+
+    /**
+     * @return the first mark in or mark out strictly after position, {@link com.google.android.exoplayer2.C#TIME_UNSET}
+     * if none
+     */
+    long findNextBoundary(long position);
+
+    /**
+     * @return the blocked segment with the first mark in strictly after position, null if none
+     */
+    @Nullable
+    Segment findNextBlockedSegment(long position);
+}
@@ -0,0 +1,236 @@
+package ch.srg.mediaplayer.segment.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Segments sorted by mark in position, with a {@link MarkOutTree} of their mark outs. A position lookup is a binary
+ * search followed by one logarithmic tree query per segment containing the position, so that a segment covering many
+ * others (a whole programme with its chapters) does not make lookups linear.
+ * <p>
+ * Each entry keeps the order in which its segment appears in the owning list, so lookups return the same segment
+ * as a linear scan would (first match in list order).
+ */
+final class SegmentPositionIndex {
+    private static final Entry[] EMPTY_ENTRIES = new Entry[0];
+    private static final Comparator<Entry> ENTRY_COMPARATOR = (e1, e2) -> {
+        int result = Long.compare(e1.markIn, e2.markIn);
+        return result != 0 ? result : Long.compare(e1.order, e2.order);
+    };
+
+    private Entry[] entries = EMPTY_ENTRIES;
+    private final MarkOutTree markOutTree = new MarkOutTree(0);
+    private int size;
+    private long nextOrder;
+
+    private static final class Entry {
+        final Segment segment;
+        final long markIn;
+        final long markOut;
+        final long order;
+
+        Entry(@NonNull Segment segment, long order) {
+            this.segment = segment;
+            this.markIn = segment.getMarkIn().getPosition();
+            this.markOut = segment.getMarkOut().getPosition();
+            this.order = order;
+        }
+    }
+
+    void rebuild(@NonNull List<Segment> segments) {
+        size = segments.size();
+        entries = new Entry[Math.max(size, 4)];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry(segments.get(i), i);
+        }
+        Arrays.sort(entries, 0, size, ENTRY_COMPARATOR);
+        nextOrder = size;
+        markOutTree.clear(size);
+        for (int i = 0; i < size; i++) {
+            markOutTree.setLeaf(i, entries[i].markOut);
+        }
+        markOutTree.build();
+    }
+
+    /**
+     * Index a segment added at the end of the owning list.
+     */
+    void append(@NonNull Segment segment) {
+        insert(new Entry(segment, nextOrder++));
+    }
+
+    /**
+     * Remove the entry of a segment removed from the owning list.
+     *
+     * @return false if the entry cannot be identified without ambiguity, the index must then be rebuilt
+     */
+    boolean remove(@NonNull Segment segment) {
+        int index = findEntry(segment);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Replace the entry of a segment by a new segment at the same place in the owning list.
+     *
+     * @return false if the entry cannot be identified without ambiguity, the index must then be rebuilt
+     */
+    boolean replace(@NonNull Segment oldSegment, @NonNull Segment newSegment) {
+        int index = findEntry(oldSegment);
+        if (index < 0) {
+            return false;
+        }
+        long order = entries[index].order;
+        removeAt(index);
+        insert(new Entry(newSegment, order));
+        return true;
+    }
+
+    /**
+     * @param position    player position
+     * @param blockedOnly only consider blocked segments
+     * @return the first segment (in list order) containing position
+     */
+    @Nullable
+    Segment find(long position, boolean blockedOnly) {
+        Segment result = null;
+        long resultOrder = Long.MAX_VALUE;
+        int end = upperBound(position);
+        for (int i = markOutTree.next(0, end, position); i >= 0; i = markOutTree.next(i + 1, end, position)) {
+            Entry entry = entries[i];
+            if (entry.order < resultOrder && (!blockedOnly || entry.segment.isBlocked())) {
+                result = entry.segment;
+                resultOrder = entry.order;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param position player position
+     * @return the smallest mark in or mark out strictly greater than position, {@link Long#MAX_VALUE} if none
+     */
+    long findNextBoundary(long position) {
+        int next = upperBound(position);
+        long result = next < size ? entries[next].markIn : Long.MAX_VALUE;
+        for (int i = markOutTree.next(0, next, position); i >= 0; i = markOutTree.next(i + 1, next, position)) {
+            result = Math.min(result, entries[i].markOut);
+        }
+        return result;
+    }
+
+    /**
+     * @param position player position
+     * @return the blocked segment with the smallest mark in strictly greater than position (first in list order
+     * if several start at the same position)
+     */
+    @Nullable
+    Segment findNextBlocked(long position) {
+        Entry result = null;
+        for (int i = upperBound(position); i < size; i++) {
+            Entry entry = entries[i];
+            if (result != null && entry.markIn > result.markIn) {
+                break;
+            }
+            if (entry.markOut > entry.markIn && entry.segment.isBlocked()
+                    && (result == null || entry.order < result.order)) {
+                result = entry;
+            }
+        }
+        return result != null ? result.segment : null;
+    }
+
+    private void insert(@NonNull Entry entry) {
+        if (size == entries.length) {
+            int capacity = Math.max(4, size + (size >> 1));
+            entries = Arrays.copyOf(entries, capacity);
+        }
+        int index = insertionPoint(entry);
+        System.arraycopy(entries, index, entries, index + 1, size - index);
+        entries[index] = entry;
+        size++;
+        if (index == size - 1) {
+            // Usual case, segments come sorted
+            markOutTree.set(index, entry.markOut);
+        } else {
+            updateMarkOutTree(index);
+        }
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+        entries[--size] = null;
+        markOutTree.removeLeaf(size);
+        updateMarkOutTree(index);
+    }
+
+    /**
+     * @return index of the single entry of the given segment instance, -1 if not found or if the same instance is
+     * indexed more than once.
+     */
+    private int findEntry(@NonNull Segment segment) {
+        long markIn = segment.getMarkIn().getPosition();
+        int result = -1;
+        for (int i = upperBound(markIn - 1); i < size && entries[i].markIn == markIn; i++) {
+            if (entries[i].segment == segment) {
+                if (result != -1) {
+                    return -1;
+                }
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Update the tree after the entries from the given index have moved.
+     */
+    private void updateMarkOutTree(int from) {
+        for (int i = from; i < size; i++) {
+            markOutTree.setLeaf(i, entries[i].markOut);
+        }
+        markOutTree.build();
+    }
+
+    /**
+     * @return index of the first entry whose mark in is strictly greater than position
+     */
+    private int upperBound(long position) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].markIn <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int insertionPoint(@NonNull Entry entry) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ENTRY_COMPARATOR.compare(entries[mid], entry) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
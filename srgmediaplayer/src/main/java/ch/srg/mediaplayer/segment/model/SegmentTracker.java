@@ -0,0 +1,130 @@
+package ch.srg.mediaplayer.segment.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Tracks the current segment and the blocked segment being skipped from the successive playback positions. Used by
+ * the player and by trace replays.
+ */
+public class SegmentTracker {
+    /**
+     * Hysteresis used by the player, before its mark in the current segment is kept.
+     */
+    public static final long DEFAULT_HYSTERESIS_MS = 5000;
+    public static final int CHANGE_NONE = 0;
+    /**
+     * A segment started while no segment was current.
+     */
+    public static final int CHANGE_START = 1;
+    /**
+     * The current segment ended, no segment is current.
+     */
+    public static final int CHANGE_END = 2;
+    /**
+     * The current segment changed to another segment.
+     */
+    public static final int CHANGE_SWITCH = 3;
+    /**
+     * A blocked segment has been reached and must be skipped, see {@link #getSegmentBeingSkipped()}.
+     */
+    public static final int CHANGE_SKIP_BLOCKED = 4;
+
+    private final long hysteresisMs;
+    @Nullable
+    private Segment currentSegment;
+    @Nullable
+    private Segment segmentBeingSkipped;
+
+    /**
+     * @param hysteresisMs duration before its mark in during which the current segment is kept
+     */
+    public SegmentTracker(long hysteresisMs) {
+        this.hysteresisMs = hysteresisMs;
+    }
+
+    /**
+     * @param lookup   player segments
+     * @param position player position
+     * @return one of the CHANGE constants
+     */
+    public int update(@NonNull SegmentLookup lookup, long position) {
+        Segment blockedSegment = lookup.findBlockedSegmentAtPosition(position);
+        if (blockedSegment != null) {
+            return skip(blockedSegment);
+        }
+        segmentBeingSkipped = null;
+        Segment newSegment = getSegment(lookup, position);
+        if (Segment.equalIdentifier(currentSegment, newSegment)) {
+            return CHANGE_NONE;
+        }
+        int change;
+        if (currentSegment == null) {
+            change = CHANGE_START;
+        } else if (newSegment == null) {
+            change = CHANGE_END;
+        } else {
+            change = CHANGE_SWITCH;
+        }
+        currentSegment = newSegment;
+        return change;
+    }
+
+    /**
+     * Called when playback reaches the mark in of a blocked segment, without updating the current segment.
+     *
+     * @return {@link #CHANGE_SKIP_BLOCKED} or {@link #CHANGE_NONE} if no new blocked segment is at position
+     */
+    public int onBlockedSegmentReached(@NonNull SegmentLookup lookup, long position) {
+        Segment blockedSegment = lookup.findBlockedSegmentAtPosition(position);
+        return blockedSegment != null ? skip(blockedSegment) : CHANGE_NONE;
+    }
+
+    private int skip(@NonNull Segment blockedSegment) {
+        if (Segment.equalIdentifier(blockedSegment, segmentBeingSkipped)) {
+            return CHANGE_NONE;
+        }
+        segmentBeingSkipped = blockedSegment;
+        return CHANGE_SKIP_BLOCKED;
+    }
+
+    /**
+     * @return the segment at position, the current segment being kept slightly before its mark in
+     */
+    @Nullable
+    public Segment getSegment(@NonNull SegmentLookup lookup, long position) {
+        if (currentSegment != null && lookup.findSegmentById(currentSegment.getIdentifier()) != null
+                && position >= currentSegment.getMarkIn().getPosition() - hysteresisMs
+                && position < currentSegment.getMarkOut().getPosition()) {
+            return currentSegment;
+        }
+        return lookup.findSegmentAtPosition(position);
+    }
+
+    /**
+     * Replace the current segment if it has the same identifier.
+     */
+    public void onSegmentUpdated(@NonNull Segment segment) {
+        if (Segment.equalIdentifier(currentSegment, segment)) {
+            currentSegment = segment;
+        }
+    }
+
+    public void clearCurrentSegment() {
+        currentSegment = null;
+    }
+
+    @Nullable
+    public Segment getCurrentSegment() {
+        return currentSegment;
+    }
+
+    @Nullable
+    public Segment getSegmentBeingSkipped() {
+        return segmentBeingSkipped;
+    }
+}
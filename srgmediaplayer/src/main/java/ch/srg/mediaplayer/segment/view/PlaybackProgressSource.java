@@ -0,0 +1,158 @@
+package ch.srg.mediaplayer.segment.view;
+
+import android.view.Choreographer;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.EnumSet;
+
+import ch.srg.mediaplayer.PlaybackClock;
+import ch.srg.mediaplayer.SRGMediaPlayerController;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Reports the playback position once per frame, for smooth progress bars. The position is extrapolated from the
+ * {@link PlaybackClock} of the player, the duration and buffer are queried at most once per
+ * {@link #RESYNC_PERIOD_MS} and after each state change.
+ */
+public class PlaybackProgressSource implements Choreographer.FrameCallback, SRGMediaPlayerController.Listener {
+    public static final long RESYNC_PERIOD_MS = 1000;
+    private static final long NO_RESYNC = Long.MIN_VALUE;
+    private static final EnumSet<SRGMediaPlayerController.Event.Type> RESYNC_EVENT_TYPES = EnumSet.of(
+            SRGMediaPlayerController.Event.Type.PLAYING_STATE_CHANGE,
+            SRGMediaPlayerController.Event.Type.LOADING_STATE_CHANGED,
+            SRGMediaPlayerController.Event.Type.POSITION_DISCONTINUITY,
+            SRGMediaPlayerController.Event.Type.STREAM_TIMELINE_CHANGED);
+
+    public interface Callback {
+        /**
+         * Called on each frame while the source is started.
+         *
+         * @param source   source, to access the duration, buffer and playing state
+         * @param position extrapolated player position in milliseconds
+         */
+        void onPlaybackProgress(@NonNull PlaybackProgressSource source, long position);
+    }
+
+    private final Callback callback;
+    @Nullable
+    private SRGMediaPlayerController controller;
+    /**
+     * Identifier of the controller when set, a pooled controller gets a new one when recycled.
+     */
+    @Nullable
+    private String controllerId;
+    private boolean started;
+
+    private long resyncTimeMs = NO_RESYNC;
+    private boolean playing;
+    private long duration;
+    private int bufferPercentage;
+
+    public PlaybackProgressSource(@NonNull Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @param controller player, null to stop reporting
+     */
+    @MainThread
+    public void setController(@Nullable SRGMediaPlayerController controller) {
+        if (this.controller == controller) {
+            return;
+        }
+        boolean wasStarted = started;
+        stop();
+        this.controller = controller;
+        controllerId = controller != null ? controller.getControllerId() : null;
+        if (wasStarted) {
+            start();
+        }
+    }
+
+    /**
+     * Report the position on each frame, until {@link #stop()}.
+     */
+    @MainThread
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        resyncTimeMs = NO_RESYNC;
+        if (controller != null && !controller.isReleased(controllerId)) {
+            controller.registerEventListener(this, RESYNC_EVENT_TYPES);
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @MainThread
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        if (controller != null) {
+            controller.unregisterEventListener(this);
+        }
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return true if the position advances
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * @return media duration as of the last resync
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return buffer percentage as of the last resync
+     */
+    public int getBufferPercentage() {
+        return bufferPercentage;
+    }
+
+    @Override
+    public void onMediaPlayerEvent(SRGMediaPlayerController mp, SRGMediaPlayerController.Event event) {
+        // Queried on next frame
+        resyncTimeMs = NO_RESYNC;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!started) {
+            return;
+        }
+        SRGMediaPlayerController controller = this.controller;
+        if (controller != null && !controller.isReleased(controllerId)) {
+            // Frame times use the System.nanoTime() time base
+            long nowMs = frameTimeNanos / 1000000;
+            if (resyncTimeMs == NO_RESYNC || nowMs - resyncTimeMs >= RESYNC_PERIOD_MS) {
+                resyncTimeMs = nowMs;
+                duration = controller.getMediaDuration();
+                bufferPercentage = controller.getBufferPercentage();
+            }
+            PlaybackClock clock = controller.getPlaybackClock();
+            playing = clock.isPlaying();
+            long position = clock.getPosition();
+            callback.onPlaybackProgress(this, duration > 0 ? Math.min(position, duration) : position);
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
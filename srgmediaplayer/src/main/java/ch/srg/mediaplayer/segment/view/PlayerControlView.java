@@ -14,6 +14,7 @@ import android.widget.LinearLayout;
 import android.widget.SeekBar;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.Locale;
@@ -50,6 +51,12 @@ public class PlayerControlView extends LinearLayout implements View.OnClickListe
 
     private long currentPosition;
     private long currentDuration;
+    private int currentBufferPercent;
+    private boolean currentPlaying;
+    private boolean timeTextsValid;
+    private boolean trackingTouch;
+
+    private final PlaybackProgressSource progressSource = new PlaybackProgressSource(this::onPlaybackProgress);
 
     @Nullable
     private Listener listener;
@@ -108,11 +115,60 @@ public class PlayerControlView extends LinearLayout implements View.OnClickListe
 
     public void attachToController(SRGMediaPlayerController playerController) {
         this.controller = playerController;
+        progressSource.setController(playerController);
         update(SRGMediaPlayerController.UNKNOWN_TIME);
+        updateProgressSource();
     }
 
     public void detachFromController(SRGMediaPlayerController srgMediaPlayerController) {
         this.controller = null;
+        progressSource.setController(null);
+        updateProgressSource();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateProgressSource();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        updateProgressSource();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateProgressSource();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateProgressSource();
+    }
+
+    /**
+     * Update the progress once per frame only while the control is visible.
+     */
+    private void updateProgressSource() {
+        if (controller != null && isAttachedToWindow() && isShown() && getWindowVisibility() == VISIBLE) {
+            progressSource.start();
+        } else {
+            progressSource.stop();
+        }
+    }
+
+    private void onPlaybackProgress(@NonNull PlaybackProgressSource source, long position) {
+        // Same source as update(), the clock may still be playing when the player state is not
+        if (controller != null && controller.isPlaying() != currentPlaying) {
+            // Buttons only change with the playing state
+            update(position);
+        } else if (!trackingTouch) {
+            updateTimes(position, source.getDuration(), source.getBufferPercentage());
+        }
     }
 
     @Override
@@ -147,10 +203,12 @@ public class PlayerControlView extends LinearLayout implements View.OnClickListe
 
     @Override
     public void onStartTrackingTouch(SeekBar seekBar) {
+        trackingTouch = true;
     }
 
     @Override
     public void onStopTrackingTouch(SeekBar seekBar) {
+        trackingTouch = false;
         if (controller != null) {
             if (seekBarSeekToMs >= 0) {
                 controller.seekTo(new Mark(seekBarSeekToMs));
@@ -184,11 +242,12 @@ public class PlayerControlView extends LinearLayout implements View.OnClickListe
     private void update(long time) {
         if (controller != null && !controller.isReleased()) {
             boolean playing = controller.isPlaying();
+            currentPlaying = playing;
             duration = controller.getMediaDuration();
             boolean mediaCompleted =
                     !playing && duration != 0 && time >= duration - COMPLETION_TOLERANCE_MS;
 
-            updateTimes(time, duration);
+            updateTimes(time, duration, controller.getBufferPercentage());
 
             if (!mediaCompleted) {
                 playButton.setVisibility(playing ? GONE : VISIBLE);
@@ -201,19 +260,23 @@ public class PlayerControlView extends LinearLayout implements View.OnClickListe
             }
             updateSubtitleButton();
         } else {
-            updateTimes(-1, -1);
+            updateTimes(-1, -1, 0);
             playButton.setVisibility(GONE);
             pauseButton.setVisibility(GONE);
             replayButton.setVisibility(View.VISIBLE);
         }
     }
 
-    private void updateTimes(long position, long duration) {
-        if (currentPosition != position || currentDuration != duration) {
+    private void updateTimes(long position, long duration, int bufferPercent) {
+        if (currentPosition != position || currentDuration != duration || currentBufferPercent != bufferPercent) {
+            // Texts only change every second, progress is updated on every frame
+            boolean positionTextChanged = !timeTextsValid || secondsOf(position) != secondsOf(currentPosition);
+            boolean durationTextChanged = !timeTextsValid || secondsOf(duration) != secondsOf(currentDuration);
+            timeTextsValid = true;
             currentPosition = position;
             currentDuration = duration;
+            currentBufferPercent = bufferPercent;
             if (controller != null) {
-                int bufferPercent = controller.getBufferPercentage();
                 if (bufferPercent > 0) {
                     seekBar.setSecondaryProgress((int) duration * bufferPercent / 100);
                 } else {
@@ -222,11 +285,19 @@ public class PlayerControlView extends LinearLayout implements View.OnClickListe
                 seekBar.setMax((int) duration);
                 seekBar.setProgress((int) position);
             }
-            leftTime.setText(stringForTimeInMs(position));
-            rightTime.setText(stringForTimeInMs(duration));
+            if (positionTextChanged) {
+                leftTime.setText(stringForTimeInMs(position));
+            }
+            if (durationTextChanged) {
+                rightTime.setText(stringForTimeInMs(duration));
+            }
         }
     }
 
+    private static long secondsOf(long millis) {
+        return millis < 0 ? -1 : millis / 1000;
+    }
+
     private String stringForTimeInMs(long millis) {
         if (millis < 0) {
             return "--:--";
@@ -0,0 +1,184 @@
+package ch.srg.mediaplayer.trace;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.srg.mediaplayer.segment.model.MarkRange;
+import ch.srg.mediaplayer.segment.model.Segment;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Reads a trace written by {@link TraceRecorder}. Record times are in milliseconds since the trace start.
+ */
+public class TraceReader {
+    public interface Handler {
+        void onPrepare(long timeMs);
+
+        void onTimeline(long timeMs, long startTimeMs, long durationMs, boolean dynamicWindow, long liveEdgeDurationMs);
+
+        void onSegmentList(long timeMs, @NonNull List<Segment> segments);
+
+        void onSegmentsAdded(long timeMs, @NonNull List<Segment> segments);
+
+        void onSegmentUpdated(long timeMs, @NonNull Segment segment);
+
+        void onSegmentsRemoved(long timeMs, @NonNull List<String> identifiers);
+
+        void onPosition(long timeMs, long position);
+
+        void onBlockedSegmentReached(long timeMs, long position);
+
+        void onSeek(long timeMs, long position);
+
+        void onPlayerState(long timeMs, int playbackState, boolean playWhenReady, long position);
+
+        void onEvent(long timeMs, int type, long position);
+
+        void onSegmentChange(long timeMs, int change, @Nullable String segmentIdentifier);
+    }
+
+    private final DataInputStream input;
+    private long timeMs;
+
+    /**
+     * @throws IOException if the stream is not a supported trace
+     */
+    public TraceReader(@NonNull InputStream inputStream) throws IOException {
+        input = new DataInputStream(new BufferedInputStream(inputStream));
+        if (input.readInt() != TraceRecorder.MAGIC) {
+            throw new IOException("Not a trace");
+        }
+        int version = input.readUnsignedByte();
+        if (version != TraceRecorder.VERSION) {
+            throw new IOException("Unsupported trace version: " + version);
+        }
+    }
+
+    /**
+     * @return false at the end of the trace
+     * @throws IOException on read errors and truncated records
+     */
+    public boolean readRecord(@NonNull Handler handler) throws IOException {
+        int kind = input.read();
+        if (kind < 0) {
+            return false;
+        }
+        timeMs += readVarLong();
+        switch (kind) {
+            case TraceRecorder.KIND_PREPARE:
+                handler.onPrepare(timeMs);
+                break;
+            case TraceRecorder.KIND_TIMELINE:
+                handler.onTimeline(timeMs, readVarLong(), readVarLong(), input.readBoolean(), readVarLong());
+                break;
+            case TraceRecorder.KIND_SEGMENT_LIST:
+                handler.onSegmentList(timeMs, readSegments());
+                break;
+            case TraceRecorder.KIND_SEGMENTS_ADDED:
+                handler.onSegmentsAdded(timeMs, readSegments());
+                break;
+            case TraceRecorder.KIND_SEGMENT_UPDATED:
+                handler.onSegmentUpdated(timeMs, readSegment());
+                break;
+            case TraceRecorder.KIND_SEGMENTS_REMOVED: {
+                int count = (int) readVarLong();
+                List<String> identifiers = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    identifiers.add(readString());
+                }
+                handler.onSegmentsRemoved(timeMs, identifiers);
+                break;
+            }
+            case TraceRecorder.KIND_POSITION:
+                handler.onPosition(timeMs, readVarLong());
+                break;
+            case TraceRecorder.KIND_BLOCKED_SEGMENT_REACHED:
+                handler.onBlockedSegmentReached(timeMs, readVarLong());
+                break;
+            case TraceRecorder.KIND_SEEK:
+                handler.onSeek(timeMs, readVarLong());
+                break;
+            case TraceRecorder.KIND_PLAYER_STATE:
+                handler.onPlayerState(timeMs, input.readUnsignedByte(), input.readBoolean(), readVarLong());
+                break;
+            case TraceRecorder.KIND_EVENT:
+                handler.onEvent(timeMs, (int) readVarLong(), readVarLong());
+                break;
+            case TraceRecorder.KIND_SEGMENT_CHANGE:
+                handler.onSegmentChange(timeMs, input.readUnsignedByte(), readString());
+                break;
+            default:
+                throw new IOException("Unknown record kind: " + kind);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of records read
+     */
+    public int readAll(@NonNull Handler handler) throws IOException {
+        int count = 0;
+        while (readRecord(handler)) {
+            count++;
+        }
+        return count;
+    }
+
+    @NonNull
+    private List<Segment> readSegments() throws IOException {
+        int count = (int) readVarLong();
+        List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(readSegment());
+        }
+        return segments;
+    }
+
+    @NonNull
+    private Segment readSegment() throws IOException {
+        int flags = input.readUnsignedByte();
+        String identifier = (flags & TraceRecorder.SEGMENT_FLAG_IDENTIFIER) != 0 ? input.readUTF() : null;
+        long markIn = readVarLong();
+        long markOut = markIn + readVarLong();
+        long duration = readVarLong();
+        String blockingReason = (flags & TraceRecorder.SEGMENT_FLAG_BLOCKED) != 0 ? input.readUTF() : null;
+        MarkRange markRange = (flags & TraceRecorder.SEGMENT_FLAG_DATE) != 0
+                ? MarkRange.fromTimes(markIn, markOut)
+                : new MarkRange(markIn, markOut);
+        return new Segment(identifier, null, null, null, blockingReason, markRange, duration,
+                (flags & TraceRecorder.SEGMENT_FLAG_DISPLAYABLE) != 0,
+                (flags & TraceRecorder.SEGMENT_FLAG_LIVE) != 0,
+                (flags & TraceRecorder.SEGMENT_FLAG_360) != 0);
+    }
+
+    @Nullable
+    private String readString() throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private long readVarLong() throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                throw new EOFException("Truncated record");
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Invalid number");
+    }
+}
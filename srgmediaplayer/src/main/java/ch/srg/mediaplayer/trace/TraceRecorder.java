@@ -0,0 +1,363 @@
+package ch.srg.mediaplayer.trace;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+
+import ch.srg.mediaplayer.segment.model.CompactSegmentList;
+import ch.srg.mediaplayer.segment.model.MediaPlayerTimeLine;
+import ch.srg.mediaplayer.segment.model.Segment;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Writes a compact binary trace of the player inputs (time line, segment list changes, positions, seeks, player
+ * states) and outputs (events, segment changes), read by {@link TraceReader} and replayed on the JVM by
+ * {@link TraceReplayer}.
+ * <p>
+ * Format: a header (magic, version) followed by records. A record is its kind byte, the milliseconds elapsed since
+ * the previous record and its payload. Numbers are zigzag variable length encoded, segment titles, descriptions and
+ * images are not recorded. The first write error disables the recorder, see {@link #getError()}.
+ */
+public class TraceRecorder {
+    static final int MAGIC = 0x53524754;
+    static final int VERSION = 2;
+
+    static final int KIND_PREPARE = 1;
+    static final int KIND_TIMELINE = 2;
+    static final int KIND_SEGMENT_LIST = 3;
+    static final int KIND_SEGMENTS_ADDED = 4;
+    static final int KIND_SEGMENT_UPDATED = 5;
+    static final int KIND_SEGMENTS_REMOVED = 6;
+    static final int KIND_POSITION = 7;
+    static final int KIND_BLOCKED_SEGMENT_REACHED = 8;
+    static final int KIND_SEEK = 9;
+    static final int KIND_PLAYER_STATE = 10;
+    static final int KIND_EVENT = 11;
+    static final int KIND_SEGMENT_CHANGE = 12;
+
+    static final int SEGMENT_FLAG_IDENTIFIER = 1;
+    static final int SEGMENT_FLAG_DATE = 1 << 1;
+    static final int SEGMENT_FLAG_DISPLAYABLE = 1 << 2;
+    static final int SEGMENT_FLAG_LIVE = 1 << 3;
+    static final int SEGMENT_FLAG_360 = 1 << 4;
+    static final int SEGMENT_FLAG_BLOCKED = 1 << 5;
+
+    private final DataOutputStream output;
+    private long lastRecordTimeMs;
+    @Nullable
+    private IOException error;
+
+    public TraceRecorder(@NonNull OutputStream outputStream) {
+        output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        lastRecordTimeMs = currentTimeMs();
+        try {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * A new media is prepared, the segment list and time line are recorded right after.
+     */
+    public synchronized void recordPrepare() {
+        startRecord(KIND_PREPARE);
+    }
+
+    /**
+     * @param startTimeMs        time line start, after resolution by the time line
+     * @param durationMs         time line duration
+     * @param dynamicWindow      true for a live window
+     * @param liveEdgeDurationMs live edge duration given to the time line update
+     */
+    public synchronized void recordTimeline(long startTimeMs, long durationMs, boolean dynamicWindow, long liveEdgeDurationMs) {
+        if (startRecord(KIND_TIMELINE)) {
+            try {
+                writeVarLong(startTimeMs);
+                writeVarLong(durationMs);
+                output.writeBoolean(dynamicWindow);
+                writeVarLong(liveEdgeDurationMs);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Record the current state of a time line.
+     */
+    public void recordTimeline(@NonNull MediaPlayerTimeLine timeLine) {
+        recordTimeline(timeLine.getStartTimeMs(), timeLine.getDurationMs(), timeLine.isDynamicWindow(), timeLine.getLiveEdgeDurationMs());
+    }
+
+    /**
+     * @param segments new user segment list
+     */
+    public synchronized void recordSegmentList(@NonNull List<Segment> segments) {
+        recordSegments(KIND_SEGMENT_LIST, segments);
+    }
+
+    /**
+     * Record a compact list without creating its segments.
+     */
+    public synchronized void recordSegmentList(@NonNull CompactSegmentList segments) {
+        if (startRecord(KIND_SEGMENT_LIST)) {
+            try {
+                int size = segments.size();
+                writeVarLong(size);
+                for (int i = 0; i < size; i++) {
+                    int compactFlags = segments.getFlags(i);
+                    int flags = 0;
+                    if ((compactFlags & CompactSegmentList.FLAG_DATE) != 0) {
+                        flags |= SEGMENT_FLAG_DATE;
+                    }
+                    if ((compactFlags & CompactSegmentList.FLAG_DISPLAYABLE) != 0) {
+                        flags |= SEGMENT_FLAG_DISPLAYABLE;
+                    }
+                    if ((compactFlags & CompactSegmentList.FLAG_LIVE) != 0) {
+                        flags |= SEGMENT_FLAG_LIVE;
+                    }
+                    if ((compactFlags & CompactSegmentList.FLAG_360) != 0) {
+                        flags |= SEGMENT_FLAG_360;
+                    }
+                    writeSegment(flags, segments.getIdentifier(i), segments.getMarkIn(i), segments.getMarkOut(i),
+                            segments.getDuration(i), segments.getBlockingReason(i));
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    public synchronized void recordSegmentsAdded(@NonNull List<Segment> segments) {
+        recordSegments(KIND_SEGMENTS_ADDED, segments);
+    }
+
+    public synchronized void recordSegmentUpdated(@NonNull Segment segment) {
+        if (startRecord(KIND_SEGMENT_UPDATED)) {
+            try {
+                writeSegment(segment);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    public synchronized void recordSegmentsRemoved(@NonNull Collection<String> identifiers) {
+        if (startRecord(KIND_SEGMENTS_REMOVED)) {
+            try {
+                writeVarLong(identifiers.size());
+                for (String identifier : identifiers) {
+                    writeString(identifier);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * @param position player position for which segment changes are checked
+     */
+    public synchronized void recordPosition(long position) {
+        recordLong(KIND_POSITION, position);
+    }
+
+    /**
+     * @param position mark in of the blocked segment reached
+     */
+    public synchronized void recordBlockedSegmentReached(long position) {
+        recordLong(KIND_BLOCKED_SEGMENT_REACHED, position);
+    }
+
+    public synchronized void recordSeek(long position) {
+        recordLong(KIND_SEEK, position);
+    }
+
+    public synchronized void recordPlayerState(int playbackState, boolean playWhenReady, long position) {
+        if (startRecord(KIND_PLAYER_STATE)) {
+            try {
+                output.writeByte(playbackState);
+                output.writeBoolean(playWhenReady);
+                writeVarLong(position);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * @param type     event type ordinal
+     * @param position player position
+     */
+    public synchronized void recordEvent(int type, long position) {
+        if (startRecord(KIND_EVENT)) {
+            try {
+                writeVarLong(type);
+                writeVarLong(position);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * @param change             one of the {@link ch.srg.mediaplayer.segment.model.SegmentTracker} CHANGE constants
+     * @param segmentIdentifier  identifier of the new current or skipped segment
+     */
+    public synchronized void recordSegmentChange(int change, @Nullable String segmentIdentifier) {
+        if (startRecord(KIND_SEGMENT_CHANGE)) {
+            try {
+                output.writeByte(change);
+                writeString(segmentIdentifier);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    public synchronized void flush() {
+        if (error == null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Flush and close the output stream, further records are ignored.
+     */
+    public synchronized void close() {
+        try {
+            output.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error == null) {
+            error = new IOException("Closed");
+        }
+    }
+
+    /**
+     * @return the error which stopped recording, null while recording
+     */
+    @Nullable
+    public synchronized IOException getError() {
+        return error;
+    }
+
+    private void recordSegments(int kind, @NonNull List<Segment> segments) {
+        if (startRecord(kind)) {
+            try {
+                writeVarLong(segments.size());
+                for (Segment segment : segments) {
+                    writeSegment(segment);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    private void recordLong(int kind, long value) {
+        if (startRecord(kind)) {
+            try {
+                writeVarLong(value);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    private boolean startRecord(int kind) {
+        if (error != null) {
+            return false;
+        }
+        long timeMs = currentTimeMs();
+        try {
+            output.writeByte(kind);
+            writeVarLong(timeMs - lastRecordTimeMs);
+        } catch (IOException e) {
+            error = e;
+            return false;
+        }
+        lastRecordTimeMs = timeMs;
+        return true;
+    }
+
+    private void writeSegment(@NonNull Segment segment) throws IOException {
+        boolean date = segment.getMarkIn().hasDate() && segment.getMarkOut().hasDate();
+        int flags = 0;
+        if (date) {
+            flags |= SEGMENT_FLAG_DATE;
+        }
+        if (segment.isDisplayable()) {
+            flags |= SEGMENT_FLAG_DISPLAYABLE;
+        }
+        if (segment.isLive()) {
+            flags |= SEGMENT_FLAG_LIVE;
+        }
+        if (segment.is360()) {
+            flags |= SEGMENT_FLAG_360;
+        }
+        long markIn = date ? segment.getMarkIn().getTime() : segment.getMarkIn().getPosition();
+        long markOut = date ? segment.getMarkOut().getTime() : segment.getMarkOut().getPosition();
+        writeSegment(flags, segment.getIdentifier(), markIn, markOut, segment.getDuration(),
+                segment.isBlocked() ? segment.getBlockingReason() : null);
+    }
+
+    private void writeSegment(int flags, @Nullable String identifier, long markIn, long markOut, long duration,
+                              @Nullable String blockingReason) throws IOException {
+        if (identifier != null) {
+            flags |= SEGMENT_FLAG_IDENTIFIER;
+        }
+        if (blockingReason != null && !blockingReason.isEmpty()) {
+            flags |= SEGMENT_FLAG_BLOCKED;
+        }
+        output.writeByte(flags);
+        if (identifier != null) {
+            output.writeUTF(identifier);
+        }
+        writeVarLong(markIn);
+        // Mark out is usually close to mark in
+        writeVarLong(markOut - markIn);
+        writeVarLong(duration);
+        if ((flags & SEGMENT_FLAG_BLOCKED) != 0) {
+            output.writeUTF(blockingReason);
+        }
+    }
+
+    private void writeString(@Nullable String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            output.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        output.writeByte((int) zigzag);
+    }
+
+    private static long currentTimeMs() {
+        return System.nanoTime() / 1000000;
+    }
+}
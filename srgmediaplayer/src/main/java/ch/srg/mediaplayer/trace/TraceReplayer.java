@@ -0,0 +1,242 @@
+package ch.srg.mediaplayer.trace;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ch.srg.mediaplayer.segment.model.MediaPlayerTimeLine;
+import ch.srg.mediaplayer.segment.model.Segment;
+import ch.srg.mediaplayer.segment.model.SegmentList;
+import ch.srg.mediaplayer.segment.model.SegmentTracker;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Feeds the inputs of a trace into the time line, segment list and {@link SegmentTracker}, as the player does, and
+ * collects the segment changes produced. Comparing them with the changes recorded by the player reproduces segment
+ * issues offline, timing {@link #replay(InputStream)} benchmarks the segment logic.
+ */
+public class TraceReplayer implements TraceReader.Handler {
+    public static final class SegmentChange {
+        public final long timeMs;
+        /**
+         * One of the {@link SegmentTracker} CHANGE constants.
+         */
+        public final int change;
+        @Nullable
+        public final String segmentIdentifier;
+
+        public SegmentChange(long timeMs, int change, @Nullable String segmentIdentifier) {
+            this.timeMs = timeMs;
+            this.change = change;
+            this.segmentIdentifier = segmentIdentifier;
+        }
+
+        /**
+         * @return true if same change and segment, times are not compared
+         */
+        public boolean isSameChange(@NonNull SegmentChange other) {
+            return change == other.change
+                    && (segmentIdentifier == null ? other.segmentIdentifier == null : segmentIdentifier.equals(other.segmentIdentifier));
+        }
+
+        @Override
+        public String toString() {
+            return "SegmentChange{" +
+                    "timeMs=" + timeMs +
+                    ", change=" + change +
+                    ", segmentIdentifier='" + segmentIdentifier + '\'' +
+                    '}';
+        }
+    }
+
+    private final MediaPlayerTimeLine timeLine = new MediaPlayerTimeLine();
+    private final SegmentList userSegmentList = new SegmentList();
+    @Nullable
+    private SegmentList playerSegmentList;
+    private final SegmentTracker segmentTracker;
+    private final List<SegmentChange> replayedChanges = new ArrayList<>();
+    private final List<SegmentChange> recordedChanges = new ArrayList<>();
+    private int positionCount;
+    private int seekCount;
+    private int eventCount;
+
+    public TraceReplayer(long segmentHysteresisMs) {
+        segmentTracker = new SegmentTracker(segmentHysteresisMs);
+    }
+
+    public TraceReplayer() {
+        this(SegmentTracker.DEFAULT_HYSTERESIS_MS);
+    }
+
+    /**
+     * Replay a whole trace with a new replayer.
+     */
+    @NonNull
+    public static TraceReplayer replay(@NonNull InputStream inputStream) throws IOException {
+        TraceReplayer replayer = new TraceReplayer();
+        new TraceReader(inputStream).readAll(replayer);
+        return replayer;
+    }
+
+    @Override
+    public void onPrepare(long timeMs) {
+        userSegmentList.clear();
+        timeLine.update(C.TIME_UNSET, C.TIME_UNSET, false, 0L);
+        segmentTracker.clearCurrentSegment();
+        playerSegmentList = null;
+    }
+
+    @Override
+    public void onTimeline(long timeMs, long startTimeMs, long durationMs, boolean dynamicWindow, long liveEdgeDurationMs) {
+        // Start times are recorded after resolution, the update does not depend on the current time
+        if (timeLine.update(startTimeMs, durationMs, dynamicWindow, liveEdgeDurationMs)) {
+            playerSegmentList = null;
+        }
+    }
+
+    @Override
+    public void onSegmentList(long timeMs, @NonNull List<Segment> segments) {
+        userSegmentList.clear();
+        userSegmentList.addAll(segments);
+        playerSegmentList = null;
+    }
+
+    @Override
+    public void onSegmentsAdded(long timeMs, @NonNull List<Segment> segments) {
+        userSegmentList.addAll(segments);
+        playerSegmentList = null;
+    }
+
+    @Override
+    public void onSegmentUpdated(long timeMs, @NonNull Segment segment) {
+        for (int i = 0; i < userSegmentList.size(); i++) {
+            if (Segment.equalIdentifier(userSegmentList.get(i), segment)) {
+                userSegmentList.set(i, segment);
+                segmentTracker.onSegmentUpdated(segment.toPlayerPositions(timeLine));
+                playerSegmentList = null;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onSegmentsRemoved(long timeMs, @NonNull List<String> identifiers) {
+        Set<String> removedIdentifiers = new HashSet<>(identifiers);
+        for (int i = userSegmentList.size() - 1; i >= 0; i--) {
+            if (removedIdentifiers.contains(userSegmentList.get(i).getIdentifier())) {
+                userSegmentList.remove(i);
+            }
+        }
+        playerSegmentList = null;
+    }
+
+    @Override
+    public void onPosition(long timeMs, long position) {
+        positionCount++;
+        onChange(timeMs, segmentTracker.update(getPlayerSegmentList(), position));
+    }
+
+    @Override
+    public void onBlockedSegmentReached(long timeMs, long position) {
+        onChange(timeMs, segmentTracker.onBlockedSegmentReached(getPlayerSegmentList(), position));
+    }
+
+    @Override
+    public void onSeek(long timeMs, long position) {
+        // Seeks have no effect until the next position
+        seekCount++;
+    }
+
+    @Override
+    public void onPlayerState(long timeMs, int playbackState, boolean playWhenReady, long position) {
+        // Segment changes only depend on positions
+    }
+
+    @Override
+    public void onEvent(long timeMs, int type, long position) {
+        eventCount++;
+    }
+
+    @Override
+    public void onSegmentChange(long timeMs, int change, @Nullable String segmentIdentifier) {
+        recordedChanges.add(new SegmentChange(timeMs, change, segmentIdentifier));
+    }
+
+    /**
+     * @return index of the first change differing between the replay and the recording, -1 if none
+     */
+    public int getFirstDivergence() {
+        int count = Math.min(replayedChanges.size(), recordedChanges.size());
+        for (int i = 0; i < count; i++) {
+            if (!replayedChanges.get(i).isSameChange(recordedChanges.get(i))) {
+                return i;
+            }
+        }
+        return replayedChanges.size() != recordedChanges.size() ? count : -1;
+    }
+
+    @NonNull
+    public List<SegmentChange> getReplayedChanges() {
+        return Collections.unmodifiableList(replayedChanges);
+    }
+
+    @NonNull
+    public List<SegmentChange> getRecordedChanges() {
+        return Collections.unmodifiableList(recordedChanges);
+    }
+
+    @Nullable
+    public Segment getCurrentSegment() {
+        return segmentTracker.getCurrentSegment();
+    }
+
+    @NonNull
+    public MediaPlayerTimeLine getTimeLine() {
+        return timeLine;
+    }
+
+    public int getPositionCount() {
+        return positionCount;
+    }
+
+    public int getSeekCount() {
+        return seekCount;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    private void onChange(long timeMs, int change) {
+        if (change == SegmentTracker.CHANGE_NONE) {
+            return;
+        }
+        Segment segment = change == SegmentTracker.CHANGE_SKIP_BLOCKED
+                ? segmentTracker.getSegmentBeingSkipped()
+                : segmentTracker.getCurrentSegment();
+        replayedChanges.add(new SegmentChange(timeMs, change, segment != null ? segment.getIdentifier() : null));
+    }
+
+    @NonNull
+    private SegmentList getPlayerSegmentList() {
+        if (playerSegmentList == null) {
+            playerSegmentList = new SegmentList(userSegmentList.size());
+            for (Segment segment : userSegmentList) {
+                playerSegmentList.add(segment.toPlayerPositions(timeLine));
+            }
+        }
+        return playerSegmentList;
+    }
+}
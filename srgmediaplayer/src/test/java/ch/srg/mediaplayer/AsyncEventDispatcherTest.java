@@ -0,0 +1,99 @@
+package ch.srg.mediaplayer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ * <p>
+ * Events are posted without controller: it cannot be created in local unit tests.
+ */
+public class AsyncEventDispatcherTest {
+
+    private static class RecordingListener implements AsyncEventDispatcher.BatchListener {
+        final List<Integer> calls = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch batchEnd = new CountDownLatch(1);
+        private int batchSize;
+
+        @Override
+        public void onMediaPlayerEvent(SRGMediaPlayerController mp, SRGMediaPlayerController.Event event) {
+            calls.add(calls.size());
+            batchSize++;
+        }
+
+        @Override
+        public void onMediaPlayerEventBatchEnd() {
+            batchSizes.add(batchSize);
+            batchSize = 0;
+            batchEnd.countDown();
+        }
+    }
+
+    @Test
+    public void testBatchDelivery() throws InterruptedException {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(50, 100, AsyncEventDispatcher.DropPolicy.DROP_OLDEST);
+        RecordingListener listener = new RecordingListener();
+        for (int i = 0; i < 10; i++) {
+            dispatcher.post(null, listener, null);
+        }
+        Assert.assertTrue(listener.batchEnd.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(10, listener.calls.size());
+        Assert.assertEquals(Collections.singletonList(10), listener.batchSizes);
+        Assert.assertEquals(0, dispatcher.getDroppedEventCount());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(60000, 3, AsyncEventDispatcher.DropPolicy.DROP_NEWEST);
+        RecordingListener listener = new RecordingListener();
+        for (int i = 0; i < 5; i++) {
+            dispatcher.post(null, listener, null);
+        }
+        Assert.assertEquals(2, dispatcher.getDroppedEventCount());
+        dispatcher.shutdown();
+        Assert.assertTrue(listener.batchEnd.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, listener.calls.size());
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(60000, 3, AsyncEventDispatcher.DropPolicy.DROP_OLDEST);
+        RecordingListener dropped = new RecordingListener();
+        RecordingListener kept = new RecordingListener();
+        dispatcher.post(null, dropped, null);
+        dispatcher.post(null, dropped, null);
+        for (int i = 0; i < 3; i++) {
+            dispatcher.post(null, kept, null);
+        }
+        Assert.assertEquals(2, dispatcher.getDroppedEventCount());
+        dispatcher.shutdown();
+        Assert.assertTrue(kept.batchEnd.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, kept.calls.size());
+        Assert.assertTrue(dropped.calls.isEmpty());
+    }
+
+    @Test
+    public void testShutdown() throws InterruptedException {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(60000, 10, AsyncEventDispatcher.DropPolicy.DROP_OLDEST);
+        RecordingListener listener = new RecordingListener();
+        dispatcher.post(null, listener, null);
+        dispatcher.shutdown();
+        dispatcher.shutdown();
+        Assert.assertTrue(dispatcher.isShutdown());
+        Assert.assertTrue(listener.batchEnd.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, listener.calls.size());
+
+        dispatcher.post(null, listener, null);
+        Assert.assertEquals(1, dispatcher.getDroppedEventCount());
+    }
+}
@@ -0,0 +1,107 @@
+package ch.srg.mediaplayer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import ch.srg.mediaplayer.segment.model.CompactSegmentList;
+import ch.srg.mediaplayer.segment.model.MediaPlayerTimeLine;
+import ch.srg.mediaplayer.segment.model.Segment;
+import ch.srg.mediaplayer.segment.model.SegmentList;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ */
+public class CompactSegmentListTest {
+
+    private static String identifierOf(Segment segment) {
+        return segment != null ? segment.getIdentifier() : null;
+    }
+
+    @Test
+    public void testSameResultsAsSegmentList() {
+        Random random = new Random(7);
+        CompactSegmentList compactSegmentList = new CompactSegmentList(4, null);
+        SegmentList segmentList = new SegmentList();
+        for (int i = 0; i < 500; i++) {
+            long markIn = i < 250 ? i * 100 : random.nextInt(30000);
+            long markOut = markIn + random.nextInt(3000);
+            boolean blocked = random.nextInt(5) == 0;
+            String identifier = "s" + random.nextInt(400);
+            compactSegmentList.add(identifier, markIn, markOut, markOut - markIn, CompactSegmentList.FLAG_DISPLAYABLE,
+                    blocked ? "GEOBLOCK" : null);
+            segmentList.add(new Segment(identifier, null, null, null, blocked ? "GEOBLOCK" : null,
+                    markIn, markOut, markOut - markIn, true, false, false));
+            if (i % 50 == 0) {
+                for (long position = -1; position < 34000; position += 13) {
+                    Assert.assertEquals(identifierOf(segmentList.findSegmentAtPosition(position)),
+                            identifierOf(compactSegmentList.findSegmentAtPosition(position)));
+                    Assert.assertEquals(identifierOf(segmentList.findBlockedSegmentAtPosition(position)),
+                            identifierOf(compactSegmentList.findBlockedSegmentAtPosition(position)));
+                    Assert.assertEquals(segmentList.findNextBoundary(position), compactSegmentList.findNextBoundary(position));
+                    Assert.assertEquals(identifierOf(segmentList.findNextBlockedSegment(position)),
+                            identifierOf(compactSegmentList.findNextBlockedSegment(position)));
+                }
+                for (int id = 0; id < 400; id++) {
+                    Segment expected = segmentList.findSegmentById("s" + id);
+                    Segment actual = compactSegmentList.findSegmentById("s" + id);
+                    Assert.assertEquals(expected != null ? expected.getMarkIn().getPosition() : null,
+                            actual != null ? actual.getMarkIn().getPosition() : null);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCoveringSegment() {
+        CompactSegmentList compactSegmentList = new CompactSegmentList(null);
+        compactSegmentList.add("programme", 0, 1000000, 1000000, CompactSegmentList.FLAG_DISPLAYABLE, null);
+        for (int i = 0; i < 1000; i++) {
+            compactSegmentList.add("c" + i, i * 1000, (i + 1) * 1000 - 200, 800, CompactSegmentList.FLAG_DISPLAYABLE,
+                    i % 10 == 0 ? "GEOBLOCK" : null);
+        }
+        Assert.assertEquals("programme", compactSegmentList.findSegmentAtPosition(500000).getIdentifier());
+        Assert.assertEquals("c500", compactSegmentList.findBlockedSegmentAtPosition(500000).getIdentifier());
+        Assert.assertNull(compactSegmentList.findBlockedSegmentAtPosition(500900));
+        Assert.assertEquals(500800, compactSegmentList.findNextBoundary(500000));
+        Assert.assertEquals(501000, compactSegmentList.findNextBoundary(500800));
+        Assert.assertEquals(1000000, compactSegmentList.findNextBoundary(999800));
+    }
+
+    @Test
+    public void testLazyMetadataAndDates() {
+        int[] loadCount = new int[1];
+        CompactSegmentList compactSegmentList = new CompactSegmentList((index, identifier) -> {
+            loadCount[0]++;
+            return new CompactSegmentList.Metadata("Title " + identifier, null, null);
+        });
+        long referenceDate = 1_500_000_000_000L;
+        for (int i = 0; i < 100; i++) {
+            compactSegmentList.add("d" + i, referenceDate + i * 1000, referenceDate + (i + 1) * 1000, 1000,
+                    CompactSegmentList.FLAG_DATE | CompactSegmentList.FLAG_DISPLAYABLE, null);
+        }
+        Assert.assertEquals(0, loadCount[0]);
+        Assert.assertNull(compactSegmentList.findSegmentAtPosition(500));
+
+        MediaPlayerTimeLine timeLine = new MediaPlayerTimeLine(referenceDate + 10000, 60000, true, 0);
+        CompactSegmentList playerSegmentList = compactSegmentList.toPlayerPositions(timeLine);
+        Segment segment = playerSegmentList.findSegmentAtPosition(500);
+        Assert.assertEquals("d10", segment.getIdentifier());
+        Assert.assertEquals("Title d10", segment.getTitle());
+        Assert.assertFalse(segment.getMarkIn().hasDate());
+        Assert.assertSame(segment, playerSegmentList.findSegmentById("d10"));
+        Assert.assertEquals(1, loadCount[0]);
+        Assert.assertEquals(referenceDate + 10000, compactSegmentList.get(10).getMarkIn().getTime());
+
+        // Metadata is shared with the copies made for later time lines
+        timeLine.update(referenceDate + 11000, 60000, true);
+        Segment movedSegment = compactSegmentList.toPlayerPositions(timeLine).findSegmentAtPosition(0);
+        Assert.assertEquals("d11", movedSegment.getIdentifier());
+        Assert.assertEquals("Title d11", movedSegment.getTitle());
+        Assert.assertEquals("Title d10", compactSegmentList.toPlayerPositions(timeLine).findSegmentById("d10").getTitle());
+        Assert.assertEquals(2, loadCount[0]);
+    }
+}
@@ -0,0 +1,32 @@
+package ch.srg.mediaplayer;
+
+import com.google.android.exoplayer2.C;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ */
+public class PlaybackClockTest {
+
+    @Test
+    public void testExtrapolation() {
+        PlaybackClock clock = new PlaybackClock(1000, 5000, 1.5f, true, C.TIME_UNSET);
+        Assert.assertEquals(1000, clock.getPosition(4000));
+        Assert.assertEquals(2500, clock.getPosition(6000));
+
+        PlaybackClock paused = new PlaybackClock(1000, 5000, 1f, false, 60000);
+        Assert.assertEquals(1000, paused.getPosition(9000));
+    }
+
+    @Test
+    public void testClampedToDuration() {
+        PlaybackClock clock = new PlaybackClock(59000, 5000, 1f, true, 60000);
+        Assert.assertEquals(59500, clock.getPosition(5500));
+        Assert.assertEquals(60000, clock.getPosition(7000));
+        Assert.assertEquals(60000, clock.getPosition(100000));
+    }
+}
@@ -0,0 +1,196 @@
+package ch.srg.mediaplayer;
+
+import com.google.android.exoplayer2.C;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+
+import ch.srg.mediaplayer.segment.model.Segment;
+import ch.srg.mediaplayer.segment.model.SegmentList;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ */
+public class SegmentListTest {
+
+    private static Segment createSegment(String identifier, long markIn, long markOut, boolean blocked) {
+        return new Segment(identifier, identifier, null, null, blocked ? "GEOBLOCK" : null,
+                markIn, markOut, markOut - markIn, true, false, false);
+    }
+
+    private static Segment linearFind(List<Segment> segments, long position, boolean blockedOnly) {
+        for (Segment segment : segments) {
+            if ((!blockedOnly || segment.isBlocked()) && segment.getMarkRange().isInRange(position)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private static long linearNextBoundary(List<Segment> segments, long position) {
+        long result = Long.MAX_VALUE;
+        for (Segment segment : segments) {
+            long markIn = segment.getMarkIn().getPosition();
+            long markOut = segment.getMarkOut().getPosition();
+            if (markIn > position) {
+                result = Math.min(result, markIn);
+            } else if (markOut > position) {
+                result = Math.min(result, markOut);
+            }
+        }
+        return result == Long.MAX_VALUE ? C.TIME_UNSET : result;
+    }
+
+    private static Segment linearFindById(List<Segment> segments, String identifier) {
+        for (Segment segment : segments) {
+            if (identifier.equals(segment.getIdentifier())) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameAsLinearScan(SegmentList segmentList, long maxPosition) {
+        for (int i = 0; i < 60; i++) {
+            Segment expected = linearFindById(segmentList, "r" + i);
+            Assert.assertSame(expected, segmentList.findSegmentById("r" + i));
+            Assert.assertEquals(expected != null ? segmentList.indexOf(expected) : -1, segmentList.indexOfIdentifier("r" + i));
+        }
+        for (long position = -1; position <= maxPosition; position += 7) {
+            Assert.assertSame(linearFind(segmentList, position, false), segmentList.findSegmentAtPosition(position));
+            Assert.assertSame(linearFind(segmentList, position, true), segmentList.findBlockedSegmentAtPosition(position));
+            Assert.assertEquals(linearNextBoundary(segmentList, position), segmentList.findNextBoundary(position));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        SegmentList segmentList = new SegmentList();
+        Assert.assertNull(segmentList.findSegmentAtPosition(0));
+        Assert.assertNull(segmentList.findBlockedSegmentAtPosition(0));
+    }
+
+    @Test
+    public void testContiguousSegments() {
+        SegmentList segmentList = new SegmentList();
+        for (int i = 0; i < 1000; i++) {
+            segmentList.add(createSegment("s" + i, i * 1000, (i + 1) * 1000, i % 10 == 0));
+        }
+        Assert.assertEquals("s0", segmentList.findSegmentAtPosition(0).getIdentifier());
+        Assert.assertEquals("s1", segmentList.findSegmentAtPosition(1000).getIdentifier());
+        Assert.assertEquals("s999", segmentList.findSegmentAtPosition(999999).getIdentifier());
+        Assert.assertNull(segmentList.findSegmentAtPosition(1000000));
+        Assert.assertNull(segmentList.findBlockedSegmentAtPosition(1500));
+        Assert.assertEquals("s10", segmentList.findBlockedSegmentAtPosition(10500).getIdentifier());
+        Assert.assertEquals(1000, segmentList.findNextBoundary(0));
+        Assert.assertEquals(1000000, segmentList.findNextBoundary(999999));
+        Assert.assertEquals(C.TIME_UNSET, segmentList.findNextBoundary(1000000));
+        Assert.assertEquals("s10", segmentList.findNextBlockedSegment(0).getIdentifier());
+        Assert.assertEquals("s20", segmentList.findNextBlockedSegment(10000).getIdentifier());
+        Assert.assertNull(segmentList.findNextBlockedSegment(990000));
+    }
+
+    @Test
+    public void testFirstMatchWithOverlaps() {
+        SegmentList segmentList = new SegmentList();
+        Segment chapter = createSegment("chapter", 0, 10000, false);
+        Segment inner = createSegment("inner", 2000, 4000, true);
+        segmentList.add(inner);
+        segmentList.add(chapter);
+        Assert.assertSame(inner, segmentList.findSegmentAtPosition(3000));
+        Assert.assertSame(chapter, segmentList.findSegmentAtPosition(5000));
+        Assert.assertSame(chapter, segmentList.findSegmentAtPosition(1000));
+
+        segmentList.remove(inner);
+        Assert.assertSame(chapter, segmentList.findSegmentAtPosition(3000));
+        Assert.assertNull(segmentList.findBlockedSegmentAtPosition(3000));
+
+        segmentList.add(0, inner);
+        Assert.assertSame(inner, segmentList.findSegmentAtPosition(3000));
+    }
+
+    @Test
+    public void testCoveringSegment() {
+        SegmentList segmentList = new SegmentList();
+        for (int i = 0; i < 1000; i++) {
+            segmentList.add(createSegment("c" + i, i * 1000, (i + 1) * 1000 - 200, i % 10 == 0));
+        }
+        Segment programme = createSegment("programme", 0, 1000000, false);
+        segmentList.add(programme);
+        Assert.assertEquals("c500", segmentList.findSegmentAtPosition(500000).getIdentifier());
+        Assert.assertSame(programme, segmentList.findSegmentAtPosition(500900));
+        Assert.assertEquals("c500", segmentList.findBlockedSegmentAtPosition(500000).getIdentifier());
+        Assert.assertNull(segmentList.findBlockedSegmentAtPosition(501000));
+        Assert.assertEquals(500800, segmentList.findNextBoundary(500000));
+        Assert.assertEquals(501000, segmentList.findNextBoundary(500800));
+        Assert.assertEquals(C.TIME_UNSET, segmentList.findNextBoundary(1000000));
+        assertSameAsLinearScan(segmentList, 1001000);
+
+        segmentList.add(0, createSegment("whole", -1000, 2000000, true));
+        Assert.assertEquals("whole", segmentList.findSegmentAtPosition(500000).getIdentifier());
+        Assert.assertEquals(2000000, segmentList.findNextBoundary(1000000));
+        assertSameAsLinearScan(segmentList, 1001000);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testSubListComodification() {
+        SegmentList segmentList = new SegmentList();
+        for (int i = 0; i < 4; i++) {
+            segmentList.add(createSegment("s" + i, i * 1000, (i + 1) * 1000, false));
+        }
+        List<Segment> subList = segmentList.subList(1, 3);
+        subList.remove(0);
+        Assert.assertEquals(3, segmentList.size());
+        segmentList.add(createSegment("s4", 4000, 5000, false));
+        subList.get(0);
+    }
+
+    @Test
+    public void testRandomMutations() {
+        Random random = new Random(42);
+        SegmentList segmentList = new SegmentList();
+        for (int round = 0; round < 400; round++) {
+            long markIn = random.nextInt(20000);
+            Segment segment = createSegment("r" + random.nextInt(60), markIn, markIn + random.nextInt(3000), random.nextInt(4) == 0);
+            switch (random.nextInt(7)) {
+                case 0:
+                    if (!segmentList.isEmpty()) {
+                        segmentList.remove(random.nextInt(segmentList.size()));
+                    }
+                    break;
+                case 1:
+                    if (!segmentList.isEmpty()) {
+                        segmentList.set(random.nextInt(segmentList.size()), segment);
+                    }
+                    break;
+                case 2:
+                    segmentList.add(random.nextInt(segmentList.size() + 1), segment);
+                    break;
+                case 3:
+                    if (segmentList.size() > 2) {
+                        segmentList.subList(0, 2).clear();
+                    }
+                    break;
+                case 4:
+                    if (segmentList.size() > 2) {
+                        segmentList.subList(1, segmentList.size()).set(0, segment);
+                    }
+                    break;
+                default:
+                    segmentList.add(segment);
+                    break;
+            }
+            if (round % 20 == 0) {
+                Collections.shuffle(segmentList, random);
+            }
+            assertSameAsLinearScan(segmentList, 23000);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ch.srg.mediaplayer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.srg.mediaplayer.segment.model.Segment;
+import ch.srg.mediaplayer.segment.model.SegmentList;
+import ch.srg.mediaplayer.segment.model.SegmentTracker;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ */
+public class SegmentTrackerTest {
+
+    private static Segment createSegment(String identifier, long markIn, long markOut, boolean blocked) {
+        return new Segment(identifier, identifier, null, null, blocked ? "GEOBLOCK" : null,
+                markIn, markOut, markOut - markIn, true, false, false);
+    }
+
+    @Test
+    public void testChanges() {
+        SegmentList segmentList = new SegmentList();
+        segmentList.add(createSegment("a", 10000, 20000, false));
+        segmentList.add(createSegment("b", 20000, 30000, false));
+        segmentList.add(createSegment("c", 40000, 50000, true));
+        SegmentTracker tracker = new SegmentTracker(SegmentTracker.DEFAULT_HYSTERESIS_MS);
+
+        Assert.assertEquals(SegmentTracker.CHANGE_NONE, tracker.update(segmentList, 0));
+        Assert.assertEquals(SegmentTracker.CHANGE_START, tracker.update(segmentList, 10000));
+        Assert.assertEquals("a", tracker.getCurrentSegment().getIdentifier());
+        Assert.assertEquals(SegmentTracker.CHANGE_NONE, tracker.update(segmentList, 15000));
+        Assert.assertEquals(SegmentTracker.CHANGE_SWITCH, tracker.update(segmentList, 20000));
+        Assert.assertEquals("b", tracker.getCurrentSegment().getIdentifier());
+        Assert.assertEquals(SegmentTracker.CHANGE_END, tracker.update(segmentList, 30000));
+        Assert.assertNull(tracker.getCurrentSegment());
+
+        Assert.assertEquals(SegmentTracker.CHANGE_SKIP_BLOCKED, tracker.update(segmentList, 40000));
+        Assert.assertEquals("c", tracker.getSegmentBeingSkipped().getIdentifier());
+        Assert.assertEquals(SegmentTracker.CHANGE_NONE, tracker.update(segmentList, 41000));
+        Assert.assertNull(tracker.getCurrentSegment());
+    }
+
+    @Test
+    public void testHysteresis() {
+        SegmentList segmentList = new SegmentList();
+        segmentList.add(createSegment("a", 10000, 20000, false));
+        segmentList.add(createSegment("b", 12000, 14000, false));
+        SegmentTracker tracker = new SegmentTracker(SegmentTracker.DEFAULT_HYSTERESIS_MS);
+
+        Assert.assertEquals(SegmentTracker.CHANGE_START, tracker.update(segmentList, 12000));
+        Assert.assertEquals("a", tracker.getCurrentSegment().getIdentifier());
+        // Seeking slightly before the mark in keeps the current segment
+        Assert.assertEquals(SegmentTracker.CHANGE_NONE, tracker.update(segmentList, 10000 - SegmentTracker.DEFAULT_HYSTERESIS_MS));
+        Assert.assertEquals(SegmentTracker.CHANGE_END, tracker.update(segmentList, 10000 - SegmentTracker.DEFAULT_HYSTERESIS_MS - 1));
+
+        Segment updated = createSegment("a", 10000, 25000, false);
+        segmentList.set(0, updated);
+        Assert.assertEquals(SegmentTracker.CHANGE_START, tracker.update(segmentList, 21000));
+        tracker.onSegmentUpdated(updated);
+        Assert.assertSame(updated, tracker.getCurrentSegment());
+    }
+}
@@ -0,0 +1,85 @@
+package ch.srg.mediaplayer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import ch.srg.mediaplayer.segment.model.MediaPlayerTimeLine;
+import ch.srg.mediaplayer.segment.model.Segment;
+import ch.srg.mediaplayer.segment.model.SegmentList;
+import ch.srg.mediaplayer.segment.model.SegmentTracker;
+import ch.srg.mediaplayer.trace.TraceRecorder;
+import ch.srg.mediaplayer.trace.TraceReplayer;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ */
+public class TraceReplayTest {
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final TraceRecorder recorder = new TraceRecorder(output);
+    private final MediaPlayerTimeLine timeLine = new MediaPlayerTimeLine();
+    private final SegmentList segments = new SegmentList();
+    private final SegmentTracker tracker = new SegmentTracker(SegmentTracker.DEFAULT_HYSTERESIS_MS);
+    private int changeCount;
+
+    private void play(long from, long to) {
+        SegmentList playerSegments = new SegmentList();
+        for (Segment segment : segments) {
+            playerSegments.add(segment.toPlayerPositions(timeLine));
+        }
+        for (long position = from; position < to; position += 100) {
+            recorder.recordPosition(position);
+            int change = tracker.update(playerSegments, position);
+            if (change != SegmentTracker.CHANGE_NONE) {
+                Segment segment = change == SegmentTracker.CHANGE_SKIP_BLOCKED ? tracker.getSegmentBeingSkipped() : tracker.getCurrentSegment();
+                recorder.recordSegmentChange(change, segment != null ? segment.getIdentifier() : null);
+                changeCount++;
+            }
+        }
+    }
+
+    @Test
+    public void testReplayReproducesSegmentChanges() throws IOException {
+        recorder.recordPrepare();
+        segments.addAll(Arrays.asList(
+                new Segment("a", "A", 0, 10000, 10000, true, null),
+                new Segment("b", "B", 20000, 30000, 10000, true, "GEOBLOCK"),
+                new Segment("c", "C", 25000, 40000, 15000, true, null)));
+        recorder.recordSegmentList(segments);
+        timeLine.update(0, 60000, false);
+        recorder.recordTimeline(timeLine);
+        play(0, 22000);
+
+        recorder.recordSeek(5000);
+        play(5000, 12000);
+
+        Segment d = new Segment("d", "D", null, null, null, 1000, 5000, 4000, true, false, false, 1_500_000_000_000L);
+        recorder.recordSegmentsAdded(Collections.singletonList(d));
+        segments.add(d);
+        timeLine.update(1_500_000_000_000L, 60000, true, 30000);
+        recorder.recordTimeline(timeLine);
+        play(0, 6000);
+
+        recorder.recordSegmentsRemoved(Collections.singletonList("a"));
+        segments.remove(0);
+        play(30000, 45000);
+        Assert.assertNull(recorder.getError());
+        recorder.close();
+
+        TraceReplayer replayer = TraceReplayer.replay(new ByteArrayInputStream(output.toByteArray()));
+        Assert.assertTrue(changeCount > 4);
+        Assert.assertEquals(changeCount, replayer.getReplayedChanges().size());
+        Assert.assertEquals(-1, replayer.getFirstDivergence());
+        Assert.assertEquals(1, replayer.getSeekCount());
+        Assert.assertEquals(timeLine, replayer.getTimeLine());
+        Assert.assertEquals(30000, replayer.getTimeLine().getLiveEdgeDurationMs());
+        Assert.assertEquals(tracker.getCurrentSegment() == null, replayer.getCurrentSegment() == null);
+    }
+}
@@ -0,0 +1,42 @@
+package ch.srg.mediaplayer.segment.artwork;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.srg.mediaplayer.segment.model.Segment;
+
+/**
+ * Copyright (c) SRG SSR. All rights reserved.
+ * <p>
+ * License information is available from the LICENSE file.
+ */
+public class SegmentArtworkUtilsTest {
+
+    private static Segment createSegment(long markIn, long markOut) {
+        return new Segment("s" + markIn, null, null, null, null, markIn, markOut, markOut - markIn, true, false, false);
+    }
+
+    @Test
+    public void testDistance() {
+        Segment segment = createSegment(10000, 20000);
+        Assert.assertEquals(0, SegmentArtworkUtils.getDistance(segment, 10000));
+        Assert.assertEquals(0, SegmentArtworkUtils.getDistance(segment, 19999));
+        Assert.assertEquals(1, SegmentArtworkUtils.getDistance(segment, 20001));
+        Assert.assertEquals(4000, SegmentArtworkUtils.getDistance(segment, 6000));
+        // Next segment before a segment further behind
+        Assert.assertTrue(SegmentArtworkUtils.getDistance(createSegment(21000, 30000), 15000)
+                < SegmentArtworkUtils.getDistance(createSegment(0, 5000), 15000));
+    }
+
+    @Test
+    public void testInSampleSize() {
+        Assert.assertEquals(1, SegmentArtworkUtils.getInSampleSize(1920, 1080, 0, 0));
+        Assert.assertEquals(1, SegmentArtworkUtils.getInSampleSize(1920, 1080, 1920, 1080));
+        Assert.assertEquals(1, SegmentArtworkUtils.getInSampleSize(1920, 1080, 961, 540));
+        Assert.assertEquals(2, SegmentArtworkUtils.getInSampleSize(1920, 1080, 960, 540));
+        Assert.assertEquals(4, SegmentArtworkUtils.getInSampleSize(1920, 1080, 320, 180));
+        // Both dimensions stay at least as large as the target
+        Assert.assertEquals(2, SegmentArtworkUtils.getInSampleSize(1920, 1080, 320, 500));
+        Assert.assertEquals(1, SegmentArtworkUtils.getInSampleSize(100, 100, 320, 180));
+    }
+}